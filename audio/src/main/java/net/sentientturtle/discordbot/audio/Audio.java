@@ -47,6 +47,7 @@ import java.util.stream.Collectors;
 public class Audio extends BotModule implements EventListener {
     private final Logger logger = LoggerFactory.getLogger(Audio.class);
     private final AudioPlayerManager manager;
+    private final Runnable shutdownHook;
     private AudioHandler sendHandler = null;
 
     public Audio() {
@@ -84,7 +85,28 @@ public class Audio extends BotModule implements EventListener {
             }
         });
 
-        Shutdown.registerHook(manager::shutdown);
+        shutdownHook = manager::shutdown;
+        Shutdown.registerHook(shutdownHook);
+    }
+
+    @Override
+    protected boolean isIdle() {
+        return this.sendHandler == null;
+    }
+
+    @Override
+    protected void onUnload() {
+        if (this.sendHandler != null) {
+            var guild = Core.getGuild();
+            if (guild != null) {
+                guild.getAudioManager().closeAudioConnection();
+                guild.getAudioManager().setSendingHandler(null);
+            }
+            this.sendHandler.destroy();
+            this.sendHandler = null;
+        }
+        Shutdown.removeHook(shutdownHook);
+        manager.shutdown();
     }
 
     private AudioSendHandler prepareSendHandler() {
@@ -225,7 +247,7 @@ public class Audio extends BotModule implements EventListener {
                     }
                 })).toArray(Future<?>[]::new);
 
-                Scheduling.submit(() -> {
+                Scheduling.submit(Scheduling.Pool.INTERACTIVE, Audio.class, () -> {
                     for (int i = 0; i < 240; i++) { // 500ms wait per cycle, 2 minute total
                         if (Arrays.stream(futures).allMatch(Future::isDone)) break;
                         try {
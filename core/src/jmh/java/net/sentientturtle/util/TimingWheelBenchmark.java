@@ -0,0 +1,59 @@
+package net.sentientturtle.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares timer insertion and cancellation on {@link TimingWheel} against {@link ScheduledThreadPoolExecutor}, with increasing numbers of pending timers<br>
+ * Run with {@code gradle :core:jmh}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimingWheelBenchmark {
+    private static final Runnable NOOP = () -> {};
+    private static final long MAX_DELAY_NANOS = TimeUnit.DAYS.toNanos(7);
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int pendingTimers;
+
+    private TimingWheel wheel;
+    private ScheduledThreadPoolExecutor executor;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new Random(0);
+        long now = System.nanoTime();
+        wheel = new TimingWheel(100, TimeUnit.MILLISECONDS, now);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pendingTimers; i++) {
+            long delay = TimeUnit.MINUTES.toNanos(1) + (long) (random.nextDouble() * MAX_DELAY_NANOS);   // Far enough out to never expire during the benchmark
+            wheel.schedule(NOOP, now + delay);
+            executor.schedule(NOOP, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private long nextDelay() {
+        return TimeUnit.MINUTES.toNanos(1) + (long) (random.nextDouble() * MAX_DELAY_NANOS);
+    }
+
+    @Benchmark
+    public boolean wheelScheduleCancel() {
+        return wheel.schedule(NOOP, System.nanoTime() + nextDelay()).cancel();
+    }
+
+    @Benchmark
+    public boolean executorScheduleCancel() {
+        return executor.schedule(NOOP, nextDelay(), TimeUnit.NANOSECONDS).cancel(false);
+    }
+}
@@ -3,6 +3,7 @@ package net.sentientturtle.discordbot.botmodules.convert;
 import net.sentientturtle.discordbot.botmodules.convert.units.*;
 import net.sentientturtle.discordbot.components.core.Scheduling;
 import net.sentientturtle.discordbot.components.core.Shutdown;
+import net.sentientturtle.discordbot.components.core.WarmUp;
 import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
 import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
 import net.sentientturtle.discordbot.components.module.BotModule;
@@ -29,13 +30,19 @@ import java.util.function.Supplier;
 public class Convert extends BotModule {
     private final Logger logger;
     private final HashMap<String, Unit> unitMap = new HashMap<>();
+    private final ScheduledFuture<?> updateCurrencyFuture;
+    private final Runnable shutdownHook;
     private static CurrencyValues currencyValues = new CurrencyValues();
+    private static final Unit[][] UNITS = {Currency.values(), Area.values(), Energy.values(), Information.values(), Length.values(), Mass.values(), Temperature.values(), Volume.values()};
+
+    static {
+        WarmUp.registerHook("Unit conversion", Convert::warmUp);
+    }
 
     public Convert() {
         logger = LoggerFactory.getLogger(Convert.class);
 
-        Unit[][] units = {Currency.values(), Area.values(), Energy.values(), Information.values(), Length.values(), Mass.values(), Temperature.values(), Volume.values()};
-        Arrays.stream(units)
+        Arrays.stream(UNITS)
                 .flatMap(Arrays::stream)
                 .forEach(unit -> {
                     for (String identifier : unit.identifiers()) {
@@ -45,8 +52,9 @@ public class Convert extends BotModule {
                     }
                 });
 
-        ScheduledFuture<?> updateCurrencyFuture = Scheduling.scheduleAtFixedRate(this::updateCurrencyValues, 0, 24, TimeUnit.HOURS);
-        Shutdown.registerHook(() -> updateCurrencyFuture.cancel(true));
+        updateCurrencyFuture = Scheduling.scheduleAtFixedRate(Scheduling.Pool.BACKGROUND, Convert.class, this::updateCurrencyValues, 0, 24, TimeUnit.HOURS);
+        shutdownHook = () -> updateCurrencyFuture.cancel(true);
+        Shutdown.registerHook(shutdownHook);
         HealthCheck.addInstance(this, () -> {
             if (!updateCurrencyFuture.isDone()) {
                 return HealthStatus.RUNNING;
@@ -87,6 +95,12 @@ public class Convert extends BotModule {
         logger.info("Started currency conversion daemon!");
     }
 
+    @Override
+    protected void onUnload() {
+        Shutdown.removeHook(shutdownHook);
+        updateCurrencyFuture.cancel(true);
+    }
+
     @Command(description = "Converts between units and currencies")
     public void convert(
             CommandCall commandCall,
@@ -111,18 +125,7 @@ public class Convert extends BotModule {
             commandCall.error("⚠ Cannot convert measure " + fromUnit.getClass().getSimpleName() + " to measure " + toUnit.getClass().getSimpleName());
         } else {
             try {
-                BigDecimal newValue = fromUnit.convert(value, toUnit);
-                value = value.round(new MathContext(5));    // We round for display to deal with floating point errors and conversions that give very large amounts of decimals
-                newValue = newValue.round(new MathContext(5));
-                String message = value + " "
-                                 + fromUnit.name().replace('_', ' ')
-                                 + " ≈ "  // Display an approximately-equals-sign, as we rounded the values
-                                 + newValue + " "
-                                 + toUnit.name().replace('_', ' ');
-                if (toUnit instanceof Currency) {
-                    message += "\n(Exchange rates: " + currencyValues.date + ")";
-                }
-                commandCall.reply(message);
+                commandCall.reply(conversionMessage(value, fromUnit, toUnit));
             } catch (ArithmeticException ignored) {
                 if (toUnit instanceof Currency) {
                     commandCall.error("⚠ Exchange rates are currently unavailable!");
@@ -134,6 +137,44 @@ public class Convert extends BotModule {
         }
     }
 
+    /**
+     * Converts a value between units of the same measure
+     * @return Display message for the conversion
+     * @throws ArithmeticException If the conversion is currently unavailable
+     */
+    private static String conversionMessage(BigDecimal value, Unit fromUnit, Unit toUnit) {
+        BigDecimal newValue = fromUnit.convert(value, toUnit);
+        value = value.round(new MathContext(5));    // We round for display to deal with floating point errors and conversions that give very large amounts of decimals
+        newValue = newValue.round(new MathContext(5));
+        String message = value + " "
+                         + fromUnit.name().replace('_', ' ')
+                         + " ≈ "  // Display an approximately-equals-sign, as we rounded the values
+                         + newValue + " "
+                         + toUnit.name().replace('_', ' ');
+        if (toUnit instanceof Currency) {
+            message += "\n(Exchange rates: " + currencyValues.date + ")";
+        }
+        return message;
+    }
+
+    /**
+     * Warm-up hook; Converts between the first and every other unit of each measure, skipping currencies as exchange rates may be unavailable
+     */
+    private static void warmUp() {
+        BigDecimal value = new BigDecimal("12.5");
+        for (Unit[] measure : UNITS) {
+            if (measure.length == 0 || measure[0] instanceof Currency) continue;
+            for (Unit unit : measure) {
+                try {
+                    conversionMessage(value, measure[0], unit);
+                    conversionMessage(value, unit, measure[0]);
+                } catch (ArithmeticException ignored) {
+                    // Some conversions have no exact representation; Still exercises the conversion path
+                }
+            }
+        }
+    }
+
     public static CurrencyValues getCurrencyValues() {
         return currencyValues;
     }
@@ -10,10 +10,15 @@ import net.sentientturtle.discordbot.components.module.ModuleManager;
 import net.sentientturtle.discordbot.components.module.command.Command;
 import net.sentientturtle.discordbot.components.module.command.CommandCall;
 import net.sentientturtle.discordbot.components.permission.BotPermission;
-import net.sentientturtle.discordbot.helpers.MessageHelper;
+import net.sentientturtle.util.TimeFormat;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Module providing various administrative commands
@@ -31,8 +36,10 @@ public class Admin extends BotModule {
             commandCall.error("⚠ Module does not exist!");
         } else {
             boolean permissionsChanged = ModuleManager.enableModule(module);
-            if (permissionsChanged) {
-                commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" now enabled. Please restart to apply changes.").build());
+            if (permissionsChanged && ModuleManager.moduleStatus(module) == ModuleManager.ModuleStatus.ENABLED) {
+                commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" now enabled.").build());
+            } else if (permissionsChanged) {
+                commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" now enabled, but could not be loaded. See health status for details.").build());
             } else {
                 commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" was already enabled!").build());
             }
@@ -46,7 +53,7 @@ public class Admin extends BotModule {
         } else {
             boolean permissionsChanged = ModuleManager.disableModule(module);
             if (permissionsChanged) {
-                commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" now disabled. Please restart to apply changes.").build());
+                commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" now disabled.").build());
             } else {
                 commandCall.reply(new MessageBuilder("Module ").appendCodeLine(module).append(" was already disabled!").build());
             }
@@ -65,36 +72,55 @@ public class Admin extends BotModule {
     }
 
     @Command(commandName = "admin", subcommandName = "reregister", description = "Re-registers the commands")
-    public void reregister(CommandCall commandCall) {
-        ModuleManager.registerCommands();
+    public void reregister(CommandCall commandCall, @Command.Parameter(name = "force", description = "Overwrite all commands, even if unchanged", optional = true) Boolean force) {
+        ModuleManager.registerCommands(force != null && force);
         commandCall.reply("Re-registering commands...", false);
     }
 
     @Command(commandName = "admin", subcommandGroup = "list", subcommandName = "modules", description = "Lists available modules")
-    public static void list_modules(CommandCall commandCall, @Command.Parameter(name = "page", description = "page", optional = true) Long page) {
-        commandCall.reply(
-                MessageHelper.paginate(
-                        "Modules",
-                        ModuleManager.modules.keySet().stream().sorted().map(module -> switch (ModuleManager.moduleStatus(module)) {
-                            case ENABLED -> module;
-                            case PENDING_ENABLED -> module + " (enabled after restart)";
-                            case DISABLED -> module + " (disabled)";
-                            case PENDING_DISABLED -> module + " (disabled after restart)";
-                        }).toList(),
-                        Math.max(1, page == null ? 1 : page)
-                ),
+    public static void list_modules(CommandCall commandCall) {
+        commandCall.replyLines(
+                "Modules",
+                ModuleManager.modules.keySet().stream().sorted().map(module -> switch (ModuleManager.moduleStatus(module)) {
+                    case ENABLED -> module;
+                    case PENDING_ENABLED -> module + " (enabled, failed to load)";
+                    case DISABLED -> module + " (disabled)";
+                    case PENDING_DISABLED -> module + " (disabling)";
+                }),
+                "modules",
                 true
         );
     }
 
     @Command(commandName = "admin", subcommandGroup = "health", subcommandName = "status", description = "Displays health check status")
-    public static void health_status(CommandCall commandCall, @Command.Parameter(name = "page", description = "page", optional = true) Long page) {
-        commandCall.reply(
-                MessageHelper.paginate(
-                        "Health status",
-                        HealthCheck.getMessages(),
-                        Math.max(1, page == null ? 1 : page)
-                ),
+    public static void health_status(CommandCall commandCall) {
+        commandCall.replyLines("Health status", HealthCheck.getMessages().stream(), "health", true);
+    }
+
+    @Command(commandName = "admin", subcommandGroup = "health", subcommandName = "dump", description = "Uploads a full diagnostic dump")
+    public static void health_dump(CommandCall commandCall) {
+        var runtime = Runtime.getRuntime();
+        var threads = ManagementFactory.getThreadMXBean().dumpAllThreads(false, false);
+        commandCall.replyLines(
+                "Diagnostic dump",
+                Stream.of(
+                        Stream.of("Health status"),
+                        HealthCheck.getMessages().stream(),
+                        Stream.of(
+                                "",
+                                "Runtime",
+                                "Uptime: " + TimeFormat.formatWDHMS(ManagementFactory.getRuntimeMXBean().getUptime(), TimeUnit.MILLISECONDS),
+                                "Heap: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MiB used, " + runtime.totalMemory() / (1024 * 1024) + " MiB committed, " + runtime.maxMemory() / (1024 * 1024) + " MiB max",
+                                "Processors: " + runtime.availableProcessors(),
+                                "",
+                                "Threads (" + threads.length + ")"
+                        ),
+                        Arrays.stream(threads).flatMap(thread -> Stream.concat(
+                                Stream.of("\"" + thread.getThreadName() + "\" " + thread.getThreadState()),
+                                Arrays.stream(thread.getStackTrace()).map(frame -> "    at " + frame)
+                        ))
+                ).flatMap(Function.identity()),
+                "diagnostics",
                 true
         );
     }
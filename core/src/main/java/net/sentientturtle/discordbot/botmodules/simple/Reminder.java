@@ -1,26 +1,50 @@
 package net.sentientturtle.discordbot.botmodules.simple;
 
-import net.dv8tion.jda.api.MessageBuilder;
+import net.sentientturtle.discordbot.botmodules.simple.ReminderStore.StoredReminder;
+import net.sentientturtle.discordbot.components.StaticInitException;
 import net.sentientturtle.discordbot.components.core.Core;
 import net.sentientturtle.discordbot.components.core.Scheduling;
+import net.sentientturtle.discordbot.components.core.Shutdown;
+import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
+import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
 import net.sentientturtle.discordbot.components.module.BotModule;
 import net.sentientturtle.discordbot.components.module.command.Command;
 import net.sentientturtle.discordbot.components.module.command.CommandCall;
 import net.sentientturtle.discordbot.components.persistence.Persistence;
 import net.sentientturtle.discordbot.components.persistence.PersistentObject;
+import net.sentientturtle.discordbot.helpers.MessageHelper;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
+import net.sentientturtle.util.CronSchedule;
 import net.sentientturtle.util.TimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Module providing reminder commands
+ * Module providing reminder commands<br>
+ * Reminders are kept in a {@link ReminderStore}; Only reminders due within the next {@link #WINDOW_MILLIS} are scheduled and held in memory.
  */
 public class Reminder extends BotModule implements StaticLoaded {
+    private static final Logger logger = LoggerFactory.getLogger(Reminder.class);
+    private static final long WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(10);  // Well within the window, so no reminder is loaded late
     private static final Reminders persistence = Persistence.loadObject(Reminders.class, Reminders::new);
+    private static final ReminderStore store;
+    private static final Map<Integer, StoredReminder> scheduled = new HashMap<>();  // Guarded by store; Keyed by slot, holds reminders until they are delivered
+    private static final ReminderDelivery delivery = new ReminderDelivery(Reminder::onDelivered, Reminder::onDeliveryFailed);
+    private static boolean isClosed = false;  // Guarded by store
+    private static final Map<String, CronSchedule> cronSchedules = new HashMap<>();  // Guarded by store; Parsed recurrences
 
     private static final Map<String, TimeUnit> unitNames = new HashMap<>();
     static {
@@ -37,14 +61,34 @@ public class Reminder extends BotModule implements StaticLoaded {
         unitNames.put("day", TimeUnit.DAYS);
         unitNames.put("d", TimeUnit.DAYS);
 
-        Scheduling.schedule(() -> {
-            while (Core.getJDA() == null) Thread.sleep(500);  // TODO: Replace busy-wait; Add a method to Core for explicit waiting-on-ready.
+        try {
+            store = new ReminderStore(Persistence.dataFile("reminders.idx"), Persistence.dataFile("reminders.msg"));
+        } catch (IOException e) {
+            throw new StaticInitException("Could not open reminder store", e);
+        }
+        migrateLegacyReminders();
 
-            synchronized (persistence) {
-                persistence.reminders.forEach(Reminder::scheduleReminder);
+        Shutdown.registerHook(() -> {
+            synchronized (store) {
+                isClosed = true;
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    logger.error("Could not close reminder store", e);
+                }
             }
-            return null;
-        }, 0, TimeUnit.MICROSECONDS);
+        });
+
+        Core.onPhase(Core.Phase.GATEWAY_READY, () -> Scheduling.scheduleAtFixedRate(Scheduling.Pool.BACKGROUND, Reminder.class, Reminder::loadWindow, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS));
+
+        HealthCheck.addStatic(Reminder.class,
+                () -> HealthStatus.RUNNING,
+                () -> {
+                    synchronized (store) {
+                        return isClosed ? Optional.empty() : Optional.of(store.size() + " stored, " + scheduled.size() + " scheduled, " + delivery.pending() + " users awaiting delivery");
+                    }
+                }
+        );
     }
 
     @Command(commandName = "remindme", description = "Set a reminder")
@@ -67,53 +111,251 @@ public class Reminder extends BotModule implements StaticLoaded {
                 }
             }
             long userID = commandCall.getUser().getIdLong();
-            long finalDurationTotal = durationTotal;
             long currentTime = System.currentTimeMillis();
 
-            var reminder = new PersistentReminder(userID, message, currentTime + finalDurationTotal, currentTime);
-            scheduleReminder(reminder);
-            persistence.add(reminder);
+            synchronized (store) {
+                try {
+                    var reminder = store.add(userID, message, currentTime + durationTotal, currentTime);
+                    if (reminder.dueEpochMillis() < currentTime + WINDOW_MILLIS) scheduleReminder(reminder);
+                } catch (IOException e) {
+                    logger.error("Could not store reminder", e);
+                    commandCall.error("⚠ Could not save reminder!");
+                    return;
+                }
+            }
             commandCall.reply("Reminder set!", true);
         } else {
             commandCall.error("⚠ Invalid duration syntax!");
         }
     }
 
-    private static void scheduleReminder(PersistentReminder reminder) {
-        Scheduling.schedule(
-                () -> {
-                    persistence.remove(reminder);
-                    assert Core.getJDA() != null;
-                    var user = Core.getJDA().getUserById(reminder.userID);
-                    if (user != null) {  // If user no longer exists, do nothing and drop reminder
-                        var channel = user.openPrivateChannel().complete();
-                        channel.sendMessage(
-                                new MessageBuilder()
-                                        .append(user)
-                                        .append(" reminder from ")
-                                        .append(TimeFormat.formatWDHMS(System.currentTimeMillis() - reminder.creationTime, TimeUnit.MILLISECONDS))
-                                        .append(" ago.")
-                                        .append(reminder.message != null ? "\n" + reminder.message : "")
-                                        .build()
-                        ).queue();
+    @Command(commandName = "reminders", subcommandName = "recurring", description = "Set a recurring reminder")
+    public static void reminders_recurring(
+            CommandCall commandCall,
+            @Command.Parameter(name = "schedule", description = "Cron schedule, e.g. \"0 9 * * MON-FRI\" or \"@daily\"") String expression,
+            @Command.Parameter(name = "message", description = "Message to attach to the reminder", optional = true) String message,
+            @Command.Parameter(name = "timezone", description = "Time zone of the schedule, e.g. \"Europe/Amsterdam\"; Defaults to UTC", optional = true) String timezone
+    ) {
+        CronSchedule schedule;
+        try {
+            schedule = new CronSchedule(expression, timezone != null ? ZoneId.of(timezone) : ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            commandCall.error("⚠ Invalid time zone!");
+            return;
+        } catch (IllegalArgumentException e) {
+            commandCall.error("⚠ Invalid schedule: " + e.getMessage());
+            return;
+        }
+        long userID = commandCall.getUser().getIdLong();
+        long currentTime = System.currentTimeMillis();
+        var next = schedule.next(Instant.ofEpochMilli(currentTime));
+        if (next == null) {
+            commandCall.error("⚠ Schedule never fires!");
+            return;
+        }
+
+        synchronized (store) {
+            try {
+                var reminder = store.add(userID, message, recurrence(schedule), next.toEpochMilli(), currentTime);
+                if (reminder.dueEpochMillis() < currentTime + WINDOW_MILLIS) scheduleReminder(reminder);
+            } catch (IOException e) {
+                logger.error("Could not store reminder", e);
+                commandCall.error("⚠ Could not save reminder!");
+                return;
+            }
+        }
+        commandCall.reply("Recurring reminder set! Next reminder in " + TimeFormat.formatWDHMS(next.toEpochMilli() - currentTime, TimeUnit.MILLISECONDS), true);
+    }
+
+    @Command(commandName = "reminders", subcommandName = "cancel", description = "Cancels a reminder")
+    public static void reminders_cancel(CommandCall commandCall, @Command.Parameter(name = "id", description = "ID of the reminder, as shown by /reminders list") Long id) {
+        long userID = commandCall.getUser().getIdLong();
+        boolean isCancelled = false;
+        synchronized (store) {
+            try {
+                for (StoredReminder reminder : store.forUser(userID)) {
+                    if (reminder.slot() == id && store.remove(reminder)) {
+                        scheduled.remove(reminder.slot());
+                        isCancelled = true;
+                        break;
                     }
-                },
-                reminder.scheduledTime - System.currentTimeMillis(),    // This may be negative; The reminder will simply be ran immediately.
-                TimeUnit.MILLISECONDS
+                }
+            } catch (IOException e) {
+                logger.error("Could not read reminders", e);
+                commandCall.error("⚠ Could not read reminders!");
+                return;
+            }
+        }
+        if (isCancelled) {
+            commandCall.reply("Reminder cancelled.", true);
+        } else {
+            commandCall.error("⚠ No such reminder!");
+        }
+    }
+
+    @Command(commandName = "reminders", subcommandName = "list", description = "Lists your pending reminders")
+    public static void reminders_list(CommandCall commandCall, @Command.Parameter(name = "page", description = "page", optional = true) Long page) {
+        long userID = commandCall.getUser().getIdLong();
+        List<StoredReminder> reminders;
+        synchronized (store) {
+            try {
+                reminders = store.forUser(userID);
+            } catch (IOException e) {
+                logger.error("Could not read reminders", e);
+                commandCall.error("⚠ Could not read reminders!");
+                return;
+            }
+        }
+        long currentTime = System.currentTimeMillis();
+        commandCall.reply(
+                MessageHelper.paginate(
+                        "Reminders",
+                        reminders.stream()
+                                .map(reminder -> "#" + reminder.slot()
+                                                 + " in " + TimeFormat.formatWDHMS(Math.max(0, reminder.dueEpochMillis() - currentTime), TimeUnit.MILLISECONDS)
+                                                 + (reminder.recurrence() != null ? ", recurring" : "")
+                                                 + (reminder.message() != null ? ": " + reminder.message() : ""))
+                                .toList(),
+                        Math.max(1, page == null ? 1 : page)
+                ),
+                true
         );
     }
 
-    private record PersistentReminder(long userID, String message, long scheduledTime, long creationTime) {}
+    /**
+     * Schedules all reminders due within the window that are not yet scheduled, and forces the store to disk
+     */
+    private static void loadWindow() {
+        synchronized (store) {
+            if (isClosed) return;
+            long currentTime = System.currentTimeMillis();
+            try {
+                for (StoredReminder reminder : store.dueBefore(currentTime + WINDOW_MILLIS, currentTime)) {
+                    if (!scheduled.containsKey(reminder.slot())) scheduleReminder(reminder);
+                }
+                store.force();
+            } catch (IOException e) {
+                logger.error("Could not load reminders", e);
+            }
+        }
+    }
 
-    private static class Reminders implements PersistentObject {
-        public HashSet<PersistentReminder> reminders = new HashSet<>();
+    /**
+     * Must be called while synchronized on the store
+     */
+    private static void scheduleReminder(StoredReminder reminder) {
+        scheduled.put(reminder.slot(), reminder);
+        long delay = reminder.dueEpochMillis() - System.currentTimeMillis();
+        if (delay <= 0) {   // Overdue, e.g. after downtime; Delivery spreads these out
+            delivery.enqueue(reminder);
+        } else {
+            Scheduling.schedule(Scheduling.Pool.INTERACTIVE, Reminder.class, () -> {
+                synchronized (store) {
+                    if (!reminder.equals(scheduled.get(reminder.slot()))) return;    // Cancelled
+                }
+                delivery.enqueue(reminder);
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
 
-        public synchronized void add(PersistentReminder reminder) {
-            reminders.add(reminder);
+    /**
+     * Removes delivered reminders from the store, or moves recurring reminders to their next due time
+     */
+    private static void onDelivered(List<StoredReminder> reminders) {
+        synchronized (store) {
+            long currentTime = System.currentTimeMillis();
+            for (StoredReminder reminder : reminders) {
+                scheduled.remove(reminder.slot());
+                if (isClosed) continue;
+                var schedule = reminder.recurrence() != null ? cronSchedule(reminder.recurrence()) : null;
+                var next = schedule != null ? schedule.next(Instant.ofEpochMilli(Math.max(currentTime, reminder.dueEpochMillis()))) : null;   // Missed occurrences are not repeated
+                if (next != null) {
+                    var rescheduled = store.reschedule(reminder, next.toEpochMilli());
+                    if (rescheduled != null && rescheduled.dueEpochMillis() < currentTime + WINDOW_MILLIS) scheduleReminder(rescheduled);
+                } else {
+                    store.remove(reminder);
+                }
+            }
         }
+    }
 
-        public synchronized void remove(PersistentReminder reminder) {
-            reminders.remove(reminder);
+    /**
+     * Unschedules reminders that failed to deliver; They remain in the store, and are picked up again by the next {@link #loadWindow()}
+     */
+    private static void onDeliveryFailed(List<StoredReminder> reminders) {
+        synchronized (store) {
+            for (StoredReminder reminder : reminders) {
+                scheduled.remove(reminder.slot());
+            }
         }
     }
+
+    /**
+     * @return Recurrence string stored with a recurring reminder
+     */
+    private static String recurrence(CronSchedule schedule) {
+        return schedule.zone().getId() + " " + schedule.expression();
+    }
+
+    /**
+     * Must be called while synchronized on the store
+     * @return Schedule of a stored recurrence, or null if it is invalid
+     */
+    private static CronSchedule cronSchedule(String recurrence) {
+        var schedule = cronSchedules.get(recurrence);
+        if (schedule == null) {
+            int split = recurrence.indexOf(' ');
+            try {
+                schedule = new CronSchedule(recurrence.substring(split + 1), ZoneId.of(recurrence.substring(0, split)));
+            } catch (IllegalArgumentException | DateTimeException | IndexOutOfBoundsException e) {
+                logger.warn("Invalid reminder recurrence: " + recurrence, e);
+                return null;
+            }
+            if (cronSchedules.size() >= 1024) cronSchedules.clear();
+            cronSchedules.put(recurrence, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Moves reminders from the former YAML persistence into the store
+     */
+    private static void migrateLegacyReminders() {
+        int count = 0;
+        synchronized (persistence) {
+            if (persistence.reminders.isEmpty()) return;
+            synchronized (store) {
+                var iterator = persistence.reminders.iterator();
+                while (iterator.hasNext()) {
+                    var reminder = iterator.next();
+                    try {
+                        store.add(reminder.userID, reminder.message, reminder.scheduledTime, reminder.creationTime);
+                    } catch (IOException e) {
+                        logger.error("Could not migrate reminders; Retrying on next start", e);
+                        break;
+                    }
+                    iterator.remove();
+                    count++;
+                }
+                try {
+                    store.force();
+                } catch (IOException e) {
+                    logger.warn("Could not force reminder store to disk", e);
+                }
+            }
+        }
+        if (count > 0) {
+            logger.info("Migrated " + count + " reminders to reminder store");
+            Persistence.save();     // Save right away, so migrated reminders are not migrated again
+        }
+    }
+
+    private record PersistentReminder(long userID, String message, long scheduledTime, long creationTime) {}
+
+    /**
+     * Former reminder persistence; Only read to migrate existing reminders into the store
+     */
+    private static class Reminders implements PersistentObject {
+        public HashSet<PersistentReminder> reminders = new HashSet<>();
+    }
 }
@@ -0,0 +1,206 @@
+package net.sentientturtle.discordbot.botmodules.simple;
+
+import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.PrivateChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.sentientturtle.discordbot.botmodules.simple.ReminderStore.StoredReminder;
+import net.sentientturtle.discordbot.components.core.Core;
+import net.sentientturtle.discordbot.components.core.Scheduling;
+import net.sentientturtle.util.TimeFormat;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sends due reminders by DM<br>
+ * Reminders are queued per user, and DMs are sent one at a time, at most one every {@link #SEND_INTERVAL_MILLIS}; This spreads out the burst of overdue reminders after downtime.<br>
+ * Reminders queued for a user before their DM is sent are grouped into that DM.<br>
+ * Private channels are opened asynchronously, and kept in a bounded LRU cache.
+ */
+final class ReminderDelivery {
+    private static final Logger logger = LoggerFactory.getLogger(ReminderDelivery.class);
+    private static final long SEND_INTERVAL_MILLIS = 250;
+    private static final int CHANNEL_CACHE_SIZE = 1024;
+    private static final int MAX_CONTENT_LENGTH = 1900;         // Leaves room for the mention and header within Discord's 2000 character limit
+    private static final int MAX_REMINDER_MESSAGE_LENGTH = 1800;
+    private static final int LINE_OVERHEAD = 64;                // Upper bound on the length of a reminder line without its message
+
+    private final Consumer<List<StoredReminder>> onFinished;
+    private final Consumer<List<StoredReminder>> onRetry;
+    private final LinkedHashMap<Long, List<StoredReminder>> queue = new LinkedHashMap<>();    // Guarded by this
+    private boolean isDraining = false;     // Guarded by this
+    private long nextSendMillis = 0;        // Guarded by this
+    private final Map<Long, PrivateChannel> channels = new LinkedHashMap<>(16, 0.75f, true) {  // Guarded by itself
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PrivateChannel> eldest) {
+            return size() > CHANNEL_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param onFinished Called with reminders that were delivered, or that can never be delivered
+     * @param onRetry Called with reminders that could not be delivered, but may be retried later
+     */
+    ReminderDelivery(@NotNull Consumer<List<StoredReminder>> onFinished, @NotNull Consumer<List<StoredReminder>> onRetry) {
+        this.onFinished = onFinished;
+        this.onRetry = onRetry;
+    }
+
+    /**
+     * Queues a reminder for delivery
+     */
+    void enqueue(@NotNull StoredReminder reminder) {
+        synchronized (this) {
+            queue.computeIfAbsent(reminder.userID(), userID -> new ArrayList<>()).add(reminder);
+            if (isDraining) return;
+            isDraining = true;
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * @return Number of users with queued reminders
+     */
+    synchronized int pending() {
+        return queue.size();
+    }
+
+    private void scheduleDrain() {
+        long delay;
+        synchronized (this) {
+            delay = nextSendMillis - System.currentTimeMillis();
+        }
+        Scheduling.schedule(Scheduling.Pool.INTERACTIVE, Reminder.class, this::drain, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the DM for the user at the head of the queue, and schedules the next drain
+     */
+    private void drain() {
+        long userID;
+        List<StoredReminder> batch = new ArrayList<>();
+        synchronized (this) {
+            var iterator = queue.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                isDraining = false;
+                return;
+            }
+            var entry = iterator.next();
+            userID = entry.getKey();
+            var reminders = entry.getValue();
+            iterator.remove();
+
+            int length = 0;
+            Iterator<StoredReminder> reminderIterator = reminders.iterator();
+            while (reminderIterator.hasNext()) {
+                var reminder = reminderIterator.next();
+                int lineLength = LINE_OVERHEAD + (reminder.message() != null ? Math.min(reminder.message().length(), MAX_REMINDER_MESSAGE_LENGTH) : 0);
+                if (!batch.isEmpty() && length + lineLength > MAX_CONTENT_LENGTH) break;
+                batch.add(reminder);
+                reminderIterator.remove();
+                length += lineLength;
+            }
+            if (!reminders.isEmpty()) queue.put(userID, reminders);   // Requeue the remainder at the back, so one user cannot hold up the others
+            nextSendMillis = System.currentTimeMillis() + SEND_INTERVAL_MILLIS;
+        }
+
+        try {
+            send(userID, batch);
+        } catch (Throwable t) {
+            logger.error("Error sending reminders", t);
+            onRetry.accept(batch);
+        }
+        scheduleDrain();
+    }
+
+    private void send(long userID, List<StoredReminder> batch) {
+        PrivateChannel cachedChannel;
+        synchronized (channels) {
+            cachedChannel = channels.get(userID);
+        }
+        if (cachedChannel != null) {
+            sendTo(cachedChannel, batch);
+        } else {
+            assert Core.getJDA() != null;
+            Core.getJDA().retrieveUserById(userID)
+                    .flatMap(User::openPrivateChannel)
+                    .queue(
+                            channel -> {
+                                synchronized (channels) {
+                                    channels.put(userID, channel);
+                                }
+                                sendTo(channel, batch);
+                            },
+                            failure -> onFailure(batch, failure)
+                    );
+        }
+    }
+
+    private void sendTo(PrivateChannel channel, List<StoredReminder> batch) {
+        channel.sendMessage(buildMessage(channel.getUser(), batch)).queue(
+                message -> onFinished.accept(batch),
+                failure -> {
+                    synchronized (channels) {
+                        channels.remove(channel.getUser().getIdLong());
+                    }
+                    onFailure(batch, failure);
+                }
+        );
+    }
+
+    private void onFailure(List<StoredReminder> batch, Throwable failure) {
+        if (failure instanceof ErrorResponseException exception
+            && (exception.getErrorResponse() == ErrorResponse.UNKNOWN_USER || exception.getErrorResponse() == ErrorResponse.CANNOT_SEND_TO_USER)
+        ) {     // If user no longer exists or does not accept DMs, drop reminders
+            logger.info("Dropping " + batch.size() + " undeliverable reminder(s): " + exception.getErrorResponse());
+            onFinished.accept(batch);
+        } else {
+            logger.warn("Could not deliver reminders", failure);
+            onRetry.accept(batch);
+        }
+    }
+
+    private static Message buildMessage(User user, List<StoredReminder> batch) {
+        long currentTime = System.currentTimeMillis();
+        var builder = new MessageBuilder().append(user);
+        if (batch.size() == 1) {
+            var reminder = batch.get(0);
+            if (reminder.recurrence() != null) {
+                builder.append(" recurring reminder.");
+            } else {
+                builder.append(" reminder from ")
+                        .append(TimeFormat.formatWDHMS(currentTime - reminder.creationEpochMillis(), TimeUnit.MILLISECONDS))
+                        .append(" ago.");
+            }
+            if (reminder.message() != null) builder.append("\n").append(truncate(reminder.message()));
+        } else {
+            builder.append(" ").append(String.valueOf(batch.size())).append(" reminders:");
+            for (StoredReminder reminder : batch) {
+                if (reminder.recurrence() != null) {
+                    builder.append("\nRecurring");
+                } else {
+                    builder.append("\nFrom ")
+                            .append(TimeFormat.formatWDHMS(currentTime - reminder.creationEpochMillis(), TimeUnit.MILLISECONDS))
+                            .append(" ago");
+                }
+                if (reminder.message() != null) builder.append(": ").append(truncate(reminder.message()));
+            }
+        }
+        return builder.build();
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_REMINDER_MESSAGE_LENGTH ? message.substring(0, MAX_REMINDER_MESSAGE_LENGTH - 1) + "…" : message;
+    }
+}
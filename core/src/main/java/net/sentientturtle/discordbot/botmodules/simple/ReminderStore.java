@@ -0,0 +1,450 @@
+package net.sentientturtle.discordbot.botmodules.simple;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk reminder store, indexed by due hour and by user<br>
+ * Reminders are fixed-size slots in a memory-mapped index file; Messages are kept in a separate append-only file.<br>
+ * The message file starts with a generation number, which is incremented each time the file is compacted; The index records the generation its message offsets refer to.<br>
+ * Slots are chained into hashed hourly buckets and hashed per-user buckets through doubly-linked slot references, so adding, removing, and looking up reminders by hour or by user only touches the relevant chain.<br>
+ * Only callers hold reminders in memory; The store itself keeps no per-reminder heap state.<br>
+ * Not thread-safe; Callers must synchronize.
+ */
+final class ReminderStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReminderStore.class);
+    private static final int MAGIC = 0x52454d44;    // "REMD"
+    private static final int VERSION = 2;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int TIME_BUCKETS = 1 << 16;    // Hourly buckets; Wraps after ~7.5 years, entries are filtered by their actual due hour
+    private static final int USER_BUCKETS = 1 << 16;
+    private static final int NONE = -1;
+
+    // Header layout
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOT_CAPACITY = 8;
+    private static final int H_FREE_HEAD = 12;
+    private static final int H_SIZE = 16;
+    private static final int H_SCAN_FROM_HOUR = 24;
+    private static final int H_LIVE_MESSAGE_BYTES = 32;
+    private static final int H_MESSAGE_GENERATION = 40;
+    private static final int TIME_TABLE = HEADER_SIZE;
+    private static final int USER_TABLE = TIME_TABLE + TIME_BUCKETS * 4;
+    private static final int SLOTS = USER_TABLE + USER_BUCKETS * 4;
+
+    // Slot layout
+    private static final int SLOT_SIZE = 64;
+    private static final int S_STATE = 0;           // int; 0 free, 1 active
+    private static final int S_MESSAGE_LENGTH = 4;  // int; -1 for no message
+    private static final int S_USER = 8;
+    private static final int S_DUE = 16;
+    private static final int S_CREATED = 24;
+    private static final int S_MESSAGE_OFFSET = 32;
+    private static final int S_TIME_NEXT = 40;      // Also links free slots
+    private static final int S_TIME_PREV = 44;
+    private static final int S_USER_NEXT = 48;
+    private static final int S_USER_PREV = 52;
+    private static final int S_RECURRENCE_LENGTH = 56;  // int; 0 for no recurrence. Recurrence is stored after the message
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_ACTIVE = 1;
+
+    private static final int MESSAGE_HEADER_SIZE = 8;   // long; Generation of the message file
+
+    private final File indexFile;
+    private final File messageFile;
+    private FileChannel indexChannel;
+    private FileChannel messageChannel;
+    private MappedByteBuffer index;
+
+    /**
+     * Reminder read from the store
+     * @param slot Slot of the reminder; Identifies the reminder until it is removed
+     * @param message Reminder message, may be null
+     * @param recurrence Recurrence of the reminder, may be null; Opaque to the store
+     */
+    record StoredReminder(int slot, long userID, @Nullable String message, @Nullable String recurrence, long dueEpochMillis, long creationEpochMillis) {}
+
+    ReminderStore(@NotNull File indexFile, @NotNull File messageFile) throws IOException {
+        this.indexFile = indexFile;
+        this.messageFile = messageFile;
+        boolean isNew = !indexFile.exists();
+        Files.deleteIfExists(compactedFile().toPath());    // Left over from a compaction that was interrupted before it replaced the message file
+        indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (isNew) {
+            messageChannel = FileChannel.open(messageFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writeGeneration(messageChannel, 0);
+            map(1024);
+            index.putInt(H_MAGIC, MAGIC);
+            index.putInt(H_VERSION, VERSION);
+            index.putInt(H_FREE_HEAD, NONE);
+            index.putLong(H_SIZE, 0);
+            index.putLong(H_SCAN_FROM_HOUR, Long.MAX_VALUE);
+            index.putLong(H_LIVE_MESSAGE_BYTES, 0);
+            index.putLong(H_MESSAGE_GENERATION, 0);
+            for (int i = 0; i < TIME_BUCKETS; i++) index.putInt(TIME_TABLE + i * 4, NONE);
+            for (int i = 0; i < USER_BUCKETS; i++) index.putInt(USER_TABLE + i * 4, NONE);
+            freeSlots(0, 1024);
+        } else {
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            indexChannel.read(header, 0);
+            if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) throw new IOException("Not a reminder index: " + indexFile);
+            messageChannel = FileChannel.open(messageFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(header.getInt(H_SLOT_CAPACITY));
+            long indexGeneration = index.getLong(H_MESSAGE_GENERATION);
+            long messageGeneration = readGeneration(messageChannel);
+            if (messageGeneration == indexGeneration + 1) {
+                logger.warn("Reminder message compaction was interrupted; Updating index to the compacted messages");
+                applyCompactedOffsets(messageGeneration);
+            } else if (messageGeneration != indexGeneration) {
+                throw new IOException("Reminder messages are generation " + messageGeneration + ", but index refers to generation " + indexGeneration + ": " + messageFile);
+            }
+            compactMessagesIfWasteful();
+        }
+    }
+
+    /**
+     * @return Number of reminders in the store
+     */
+    long size() {
+        return index.getLong(H_SIZE);
+    }
+
+    /**
+     * Adds a reminder
+     * @return Stored reminder
+     */
+    StoredReminder add(long userID, @Nullable String message, long dueEpochMillis, long creationEpochMillis) throws IOException {
+        return add(userID, message, null, dueEpochMillis, creationEpochMillis);
+    }
+
+    /**
+     * Adds a reminder
+     * @param recurrence Recurrence of the reminder, may be null
+     * @return Stored reminder
+     */
+    StoredReminder add(long userID, @Nullable String message, @Nullable String recurrence, long dueEpochMillis, long creationEpochMillis) throws IOException {
+        byte[] messageBytes = message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] recurrenceBytes = recurrence != null ? recurrence.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (recurrence != null && recurrenceBytes.length == 0) throw new IllegalArgumentException("Recurrence may not be empty");
+        long messageOffset = 0;
+        int messageLength = message != null ? messageBytes.length : -1;
+        if (messageBytes.length + recurrenceBytes.length > 0) {
+            var buffer = ByteBuffer.allocate(messageBytes.length + recurrenceBytes.length).put(messageBytes).put(recurrenceBytes).flip();
+            messageOffset = messageChannel.size();
+            while (buffer.hasRemaining()) messageChannel.write(buffer, messageOffset + buffer.position());
+            index.putLong(H_LIVE_MESSAGE_BYTES, index.getLong(H_LIVE_MESSAGE_BYTES) + buffer.limit());
+        }
+
+        if (index.getInt(H_FREE_HEAD) == NONE) grow();
+        int slot = index.getInt(H_FREE_HEAD);
+        int position = slotPosition(slot);
+        index.putInt(H_FREE_HEAD, index.getInt(position + S_TIME_NEXT));
+
+        index.putInt(position + S_MESSAGE_LENGTH, messageLength);
+        index.putLong(position + S_USER, userID);
+        index.putLong(position + S_DUE, dueEpochMillis);
+        index.putLong(position + S_CREATED, creationEpochMillis);
+        index.putLong(position + S_MESSAGE_OFFSET, messageOffset);
+        index.putInt(position + S_RECURRENCE_LENGTH, recurrenceBytes.length);
+        link(slot, TIME_TABLE + timeBucket(hourOf(dueEpochMillis)) * 4, S_TIME_NEXT, S_TIME_PREV);
+        link(slot, USER_TABLE + userBucket(userID) * 4, S_USER_NEXT, S_USER_PREV);
+        index.putInt(position + S_STATE, STATE_ACTIVE);
+        index.putLong(H_SIZE, size() + 1);
+        index.putLong(H_SCAN_FROM_HOUR, Math.min(index.getLong(H_SCAN_FROM_HOUR), hourOf(dueEpochMillis)));
+        return new StoredReminder(slot, userID, message, recurrence, dueEpochMillis, creationEpochMillis);
+    }
+
+    /**
+     * Removes a reminder
+     * @param reminder Reminder to remove
+     * @return True if the reminder was removed, false if it was no longer in the store
+     */
+    boolean remove(@NotNull StoredReminder reminder) {
+        if (!isCurrent(reminder)) return false;
+        int slot = reminder.slot;
+        int position = slotPosition(slot);
+        unlink(slot, TIME_TABLE + timeBucket(hourOf(reminder.dueEpochMillis)) * 4, S_TIME_NEXT, S_TIME_PREV);
+        unlink(slot, USER_TABLE + userBucket(reminder.userID) * 4, S_USER_NEXT, S_USER_PREV);
+        index.putLong(H_LIVE_MESSAGE_BYTES, index.getLong(H_LIVE_MESSAGE_BYTES) - dataLength(position));
+        index.putInt(position + S_STATE, STATE_FREE);
+        index.putInt(position + S_TIME_NEXT, index.getInt(H_FREE_HEAD));
+        index.putInt(H_FREE_HEAD, slot);
+        index.putLong(H_SIZE, size() - 1);
+        return true;
+    }
+
+    /**
+     * Moves a reminder to a new due time, keeping its slot
+     * @param reminder Reminder to move
+     * @return Moved reminder, or null if the reminder was no longer in the store
+     */
+    @Nullable StoredReminder reschedule(@NotNull StoredReminder reminder, long dueEpochMillis) {
+        if (!isCurrent(reminder)) return null;
+        int slot = reminder.slot;
+        unlink(slot, TIME_TABLE + timeBucket(hourOf(reminder.dueEpochMillis)) * 4, S_TIME_NEXT, S_TIME_PREV);
+        index.putLong(slotPosition(slot) + S_DUE, dueEpochMillis);
+        link(slot, TIME_TABLE + timeBucket(hourOf(dueEpochMillis)) * 4, S_TIME_NEXT, S_TIME_PREV);
+        index.putLong(H_SCAN_FROM_HOUR, Math.min(index.getLong(H_SCAN_FROM_HOUR), hourOf(dueEpochMillis)));
+        return new StoredReminder(slot, reminder.userID, reminder.message, reminder.recurrence, dueEpochMillis, reminder.creationEpochMillis);
+    }
+
+    /**
+     * Lists reminders due before the specified time, from the oldest hour that may still hold reminders<br>
+     * Hours before the current time that no longer hold reminders are skipped by later calls.
+     * @param beforeEpochMillis Exclusive upper bound of due times
+     * @param nowEpochMillis Current time
+     * @return Reminders due before the specified time, including overdue reminders
+     */
+    List<StoredReminder> dueBefore(long beforeEpochMillis, long nowEpochMillis) throws IOException {
+        List<StoredReminder> reminders = new ArrayList<>();
+        long fromHour = index.getLong(H_SCAN_FROM_HOUR);
+        long toHour = hourOf(beforeEpochMillis);
+        if (fromHour > toHour) return reminders;
+        long nowHour = hourOf(nowEpochMillis);
+        fromHour = Math.max(fromHour, toHour - TIME_BUCKETS + 1);  // Every bucket is covered once the range spans the whole table
+        long newScanFrom = Long.MAX_VALUE;
+        for (long hour = fromHour; hour <= toHour; hour++) {
+            boolean isHourEmpty = true;
+            for (int slot = index.getInt(TIME_TABLE + timeBucket(hour) * 4); slot != NONE; slot = index.getInt(slotPosition(slot) + S_TIME_NEXT)) {
+                long due = index.getLong(slotPosition(slot) + S_DUE);
+                if (hourOf(due) != hour) continue;
+                isHourEmpty = false;
+                if (due < beforeEpochMillis) reminders.add(read(slot));
+            }
+            if (!isHourEmpty && newScanFrom == Long.MAX_VALUE) newScanFrom = hour;
+        }
+        // Hours before now that are empty will never receive reminders again; Hours from now onwards may
+        index.putLong(H_SCAN_FROM_HOUR, Math.min(newScanFrom, Math.max(fromHour, nowHour)));
+        return reminders;
+    }
+
+    /**
+     * @return All reminders of the specified user, ordered by due time
+     */
+    List<StoredReminder> forUser(long userID) throws IOException {
+        List<StoredReminder> reminders = new ArrayList<>();
+        for (int slot = index.getInt(USER_TABLE + userBucket(userID) * 4); slot != NONE; slot = index.getInt(slotPosition(slot) + S_USER_NEXT)) {
+            if (index.getLong(slotPosition(slot) + S_USER) == userID) reminders.add(read(slot));
+        }
+        reminders.sort((a, b) -> Long.compare(a.dueEpochMillis, b.dueEpochMillis));
+        return reminders;
+    }
+
+    /**
+     * Forces changes to disk
+     */
+    void force() throws IOException {
+        index.force();
+        messageChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        indexChannel.close();
+        messageChannel.close();
+    }
+
+    /**
+     * @return True if the reminder's slot still holds that reminder, false if it was removed and possibly reused
+     */
+    private boolean isCurrent(StoredReminder reminder) {
+        if (reminder.slot < 0 || reminder.slot >= capacity()) return false;
+        int position = slotPosition(reminder.slot);
+        return index.getInt(position + S_STATE) == STATE_ACTIVE
+               && index.getLong(position + S_USER) == reminder.userID
+               && index.getLong(position + S_CREATED) == reminder.creationEpochMillis
+               && index.getLong(position + S_DUE) == reminder.dueEpochMillis;
+    }
+
+    private StoredReminder read(int slot) throws IOException {
+        int position = slotPosition(slot);
+        int messageLength = index.getInt(position + S_MESSAGE_LENGTH);
+        int recurrenceLength = index.getInt(position + S_RECURRENCE_LENGTH);
+        String message = null;
+        String recurrence = null;
+        int dataLength = dataLength(position);
+        if (dataLength > 0) {
+            var buffer = ByteBuffer.allocate(dataLength);
+            long offset = index.getLong(position + S_MESSAGE_OFFSET);
+            while (buffer.hasRemaining()) {
+                if (messageChannel.read(buffer, offset + buffer.position()) < 0) throw new IOException("Reminder message file is truncated");
+            }
+            if (messageLength >= 0) message = new String(buffer.array(), 0, messageLength, StandardCharsets.UTF_8);
+            if (recurrenceLength > 0) recurrence = new String(buffer.array(), Math.max(messageLength, 0), recurrenceLength, StandardCharsets.UTF_8);
+        } else if (messageLength == 0) {
+            message = "";
+        }
+        return new StoredReminder(
+                slot,
+                index.getLong(position + S_USER),
+                message,
+                recurrence,
+                index.getLong(position + S_DUE),
+                index.getLong(position + S_CREATED)
+        );
+    }
+
+    /**
+     * @return Length of the slot's message and recurrence in the message file
+     */
+    private int dataLength(int position) {
+        return Math.max(index.getInt(position + S_MESSAGE_LENGTH), 0) + index.getInt(position + S_RECURRENCE_LENGTH);
+    }
+
+    private void link(int slot, int headPosition, int nextField, int previousField) {
+        int position = slotPosition(slot);
+        int head = index.getInt(headPosition);
+        index.putInt(position + nextField, head);
+        index.putInt(position + previousField, NONE);
+        if (head != NONE) index.putInt(slotPosition(head) + previousField, slot);
+        index.putInt(headPosition, slot);
+    }
+
+    private void unlink(int slot, int headPosition, int nextField, int previousField) {
+        int position = slotPosition(slot);
+        int next = index.getInt(position + nextField);
+        int previous = index.getInt(position + previousField);
+        if (previous != NONE) {
+            index.putInt(slotPosition(previous) + nextField, next);
+        } else {
+            index.putInt(headPosition, next);
+        }
+        if (next != NONE) index.putInt(slotPosition(next) + previousField, previous);
+    }
+
+    private int capacity() {
+        return index.getInt(H_SLOT_CAPACITY);
+    }
+
+    /**
+     * Doubles the slot capacity, and adds the new slots to the free list
+     */
+    private void grow() throws IOException {
+        int capacity = capacity();
+        long newCapacity = Math.min((long) capacity * 2, (Integer.MAX_VALUE - SLOTS) / SLOT_SIZE);
+        if (newCapacity <= capacity) throw new IOException("Reminder index is full");
+        index.force();
+        map((int) newCapacity);
+        freeSlots(capacity, (int) newCapacity);
+    }
+
+    private void map(int slotCapacity) throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, SLOTS + (long) slotCapacity * SLOT_SIZE);
+        index.putInt(H_SLOT_CAPACITY, slotCapacity);
+    }
+
+    private void freeSlots(int from, int to) {
+        for (int slot = to - 1; slot >= from; slot--) {
+            int position = slotPosition(slot);
+            index.putInt(position + S_STATE, STATE_FREE);
+            index.putInt(position + S_TIME_NEXT, index.getInt(H_FREE_HEAD));
+            index.putInt(H_FREE_HEAD, slot);
+        }
+    }
+
+    /**
+     * Rewrites the message file without messages of removed reminders, if they take up more than half of it<br>
+     * Live messages are copied in slot order into a file of the next generation, which atomically replaces the message file; Only then are the new offsets written to the index.<br>
+     * If the index is not updated before a crash, the new offsets are derived again when the store is opened, see {@link #applyCompactedOffsets(long)}
+     */
+    private void compactMessagesIfWasteful() throws IOException {
+        long fileSize = messageChannel.size() - MESSAGE_HEADER_SIZE;
+        long liveBytes = index.getLong(H_LIVE_MESSAGE_BYTES);
+        if (fileSize - liveBytes < Math.max(liveBytes, 1024 * 1024)) return;
+
+        logger.info("Compacting reminder messages; " + liveBytes + " of " + fileSize + " bytes in use");
+        long generation = index.getLong(H_MESSAGE_GENERATION) + 1;
+        var compactedFile = compactedFile();
+        try (var compacted = FileChannel.open(compactedFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeGeneration(compacted, generation);
+            for (int slot = 0; slot < capacity(); slot++) {
+                int position = slotPosition(slot);
+                int dataLength = dataLength(position);
+                if (index.getInt(position + S_STATE) != STATE_ACTIVE || dataLength <= 0) continue;
+                long offset = index.getLong(position + S_MESSAGE_OFFSET);
+                for (long transferred = 0; transferred < dataLength; ) {
+                    transferred += messageChannel.transferTo(offset + transferred, dataLength - transferred, compacted);
+                }
+            }
+            compacted.force(true);
+        }
+        messageChannel.close();
+        Files.move(compactedFile.toPath(), messageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        messageChannel = FileChannel.open(messageFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        applyCompactedOffsets(generation);
+    }
+
+    /**
+     * Points the index at a compacted message file; The compacted layout follows from the index alone, as live messages are copied in slot order<br>
+     * Idempotent, as it only depends on the slots' states and lengths, which compaction does not change; The generation is only updated once every offset has been written.
+     * @param generation Generation of the compacted message file
+     */
+    private void applyCompactedOffsets(long generation) throws IOException {
+        long offset = MESSAGE_HEADER_SIZE;
+        for (int slot = 0; slot < capacity(); slot++) {
+            int position = slotPosition(slot);
+            int dataLength = dataLength(position);
+            if (index.getInt(position + S_STATE) != STATE_ACTIVE || dataLength <= 0) continue;
+            index.putLong(position + S_MESSAGE_OFFSET, offset);
+            offset += dataLength;
+        }
+        if (offset != messageChannel.size()) throw new IOException("Compacted reminder messages do not match index: " + messageFile);
+        index.putLong(H_LIVE_MESSAGE_BYTES, offset - MESSAGE_HEADER_SIZE);
+        index.force();
+        index.putLong(H_MESSAGE_GENERATION, generation);
+        index.force();
+    }
+
+    private File compactedFile() {
+        return new File(messageFile.getPath() + ".tmp");
+    }
+
+    private static void writeGeneration(FileChannel channel, long generation) throws IOException {
+        var buffer = ByteBuffer.allocate(MESSAGE_HEADER_SIZE).putLong(0, generation);
+        channel.position(0);
+        while (buffer.hasRemaining()) channel.write(buffer);   // Leaves the channel positioned after the header
+    }
+
+    private static long readGeneration(FileChannel channel) throws IOException {
+        var buffer = ByteBuffer.allocate(MESSAGE_HEADER_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) throw new IOException("Reminder message file is truncated");
+        }
+        return buffer.getLong(0);
+    }
+
+    private static int slotPosition(int slot) {
+        return SLOTS + slot * SLOT_SIZE;
+    }
+
+    private static long hourOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, HOUR_MILLIS);
+    }
+
+    private static int timeBucket(long hour) {
+        return (int) Math.floorMod(hour, (long) TIME_BUCKETS);
+    }
+
+    private static int userBucket(long userID) {
+        return (int) ((userID ^ (userID >>> 32)) * 0x9E3779B9L >>> 16) & (USER_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,210 @@
+package net.sentientturtle.discordbot.botmodules.simple;
+
+import net.sentientturtle.util.RecordLog;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Append-only checkpoint log of running votes, stored in a {@link RecordLog}<br>
+ * Each vote is a start record, followed by one record per ballot, and an end record once it finishes; Ballots are appended as they are cast, instead of rewriting the vote.<br>
+ * Start and end records are forced to disk immediately; Ballots are buffered until the next {@link #flush()}.<br>
+ * The log is compacted to only running votes when it is opened, and truncated once no votes are running.<br>
+ * Records of running votes are also kept in memory; A failed write may leave a partial record, which would end replay before any later record, so the log is rewritten from memory instead of appended to after a failed write.
+ */
+final class VoteLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VoteLog.class);
+    private static final byte RECORD_START = 1;
+    private static final byte RECORD_BALLOT = 2;
+    private static final byte RECORD_END = 3;
+    private static final long TRUNCATE_THRESHOLD_BYTES = 1024 * 1024;
+    private static final int MAX_RECORD_LENGTH = 1024 * 1024;
+
+    private final LinkedHashMap<Long, List<byte[]>> runningVotes = new LinkedHashMap<>();   // Records of running votes, for compaction and rewrites
+    private final RecordLog log;
+    private boolean isDirty = false;
+    private boolean isWriteFailed = false;
+
+    /**
+     * Receives the contents of the log when it is opened
+     */
+    interface Replay {
+        void start(long voteID, String title, long channelID, long messageID, String selectID, long endEpochMillis, String permission, List<String> options, boolean isLive);
+
+        void ballot(long voteID, long userID, int[] selectedOptions);
+
+        void end(long voteID);
+    }
+
+    /**
+     * Opens the log, replaying and compacting its contents
+     */
+    VoteLog(@NotNull File file, @NotNull Replay replay) throws IOException {
+        log = new RecordLog(file, MAX_RECORD_LENGTH);
+        boolean isComplete = log.replay(body -> {
+            var record = new DataInputStream(new ByteArrayInputStream(body));
+            byte type = record.readByte();
+            long voteID = record.readLong();
+            switch (type) {
+                case RECORD_START -> {
+                    String title = record.readUTF();
+                    long channelID = record.readLong();
+                    long messageID = record.readLong();
+                    String selectID = record.readUTF();
+                    long endEpochMillis = record.readLong();
+                    String permission = record.readUTF();
+                    int optionCount = record.readUnsignedByte();
+                    List<String> options = new ArrayList<>(optionCount);
+                    for (int i = 0; i < optionCount; i++) options.add(record.readUTF());
+                    boolean isLive = record.available() > 0 && record.readBoolean();   // Absent in records written before live results
+                    replay.start(voteID, title, channelID, messageID, selectID, endEpochMillis, permission, options, isLive);
+                    runningVotes.computeIfAbsent(voteID, id -> new ArrayList<>()).add(body);
+                }
+                case RECORD_BALLOT -> {
+                    long userID = record.readLong();
+                    int[] selected = new int[record.readUnsignedByte()];
+                    for (int i = 0; i < selected.length; i++) selected[i] = record.readUnsignedByte();
+                    var records = runningVotes.get(voteID);
+                    if (records != null) {
+                        replay.ballot(voteID, userID, selected);
+                        records.add(body);
+                    }
+                }
+                case RECORD_END -> {
+                    if (runningVotes.remove(voteID) != null) replay.end(voteID);
+                }
+                default -> logger.warn("Ignoring unknown record type in vote log");
+            }
+        });
+        if (!isComplete) logger.warn("Ignoring incomplete record at end of vote log");
+
+        rewrite();
+    }
+
+    /**
+     * Records the start of a vote, and forces it to disk
+     */
+    synchronized void start(long voteID, String title, long channelID, long messageID, String selectID, long endEpochMillis, String permission, List<String> options, boolean isLive) throws IOException {
+        byte[] body = RecordLog.body(record -> {
+            record.writeByte(RECORD_START);
+            record.writeLong(voteID);
+            record.writeUTF(title);
+            record.writeLong(channelID);
+            record.writeLong(messageID);
+            record.writeUTF(selectID);
+            record.writeLong(endEpochMillis);
+            record.writeUTF(permission);
+            record.writeByte(options.size());
+            for (String option : options) record.writeUTF(option);
+            record.writeBoolean(isLive);
+        });
+        runningVotes.computeIfAbsent(voteID, id -> new ArrayList<>()).add(body);
+        write(body);
+        force();
+    }
+
+    /**
+     * Records a ballot; Buffered until the next {@link #flush()}
+     */
+    synchronized void ballot(long voteID, long userID, int[] selectedOptions) throws IOException {
+        byte[] body = RecordLog.body(record -> {
+            record.writeByte(RECORD_BALLOT);
+            record.writeLong(voteID);
+            record.writeLong(userID);
+            record.writeByte(selectedOptions.length);
+            for (int option : selectedOptions) record.writeByte(option);
+        });
+        var records = runningVotes.get(voteID);
+        if (records != null) records.add(body);
+        write(body);
+        isDirty = true;
+    }
+
+    /**
+     * Records the end of a vote, and forces it to disk; Truncates the log if no votes remain running
+     */
+    synchronized void end(long voteID) throws IOException {
+        byte[] body = RecordLog.body(record -> {
+            record.writeByte(RECORD_END);
+            record.writeLong(voteID);
+        });
+        runningVotes.remove(voteID);
+        write(body);
+        if (runningVotes.isEmpty() && log.writtenBytes() >= TRUNCATE_THRESHOLD_BYTES) {
+            try {
+                log.truncate();
+            } catch (IOException e) {
+                isWriteFailed = true;
+                throw e;
+            }
+            isDirty = false;
+        } else {
+            force();
+        }
+    }
+
+    /**
+     * Forces buffered ballots to disk, if any; Rewrites the log if a write failed
+     */
+    synchronized void flush() throws IOException {
+        if (isWriteFailed) {
+            rewrite();
+        } else if (isDirty) {
+            force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isWriteFailed) rewrite();
+        log.close();
+    }
+
+    /**
+     * Appends a record; After a failed write, rewrites the log from the running votes instead, which already include the record
+     */
+    private void write(byte[] body) throws IOException {
+        if (isWriteFailed) {
+            rewrite();
+            return;
+        }
+        try {
+            log.append(body);
+        } catch (IOException e) {
+            isWriteFailed = true;
+            throw e;
+        }
+    }
+
+    private void force() throws IOException {
+        try {
+            log.force();
+        } catch (IOException e) {
+            isWriteFailed = true;
+            throw e;
+        }
+        isDirty = false;
+    }
+
+    /**
+     * Rewrites the log with the records of running votes, and forces it to disk
+     */
+    private void rewrite() throws IOException {
+        try {
+            log.rewrite(runningVotes.values().stream().flatMap(List::stream).toList());
+        } catch (IOException e) {
+            isWriteFailed = true;
+            throw e;
+        }
+        isWriteFailed = false;
+        isDirty = false;
+    }
+}
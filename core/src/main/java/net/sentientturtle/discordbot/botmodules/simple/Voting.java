@@ -3,127 +3,324 @@ package net.sentientturtle.discordbot.botmodules.simple;
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.MessageChannel;
 import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.sentientturtle.discordbot.components.StaticInitException;
 import net.sentientturtle.discordbot.components.core.Core;
 import net.sentientturtle.discordbot.components.core.Scheduling;
+import net.sentientturtle.discordbot.components.core.Shutdown;
 import net.sentientturtle.discordbot.components.interaction.SelectionMenuManager;
+import net.sentientturtle.discordbot.components.interaction.StatelessComponents;
 import net.sentientturtle.discordbot.components.module.BotModule;
 import net.sentientturtle.discordbot.components.module.command.Command;
 import net.sentientturtle.discordbot.components.module.command.CommandCall;
 import net.sentientturtle.discordbot.components.permission.BotPermission;
+import net.sentientturtle.discordbot.components.persistence.Persistence;
+import net.sentientturtle.discordbot.loader.StaticLoaded;
+import net.sentientturtle.util.ConcurrentLongSet;
 import net.sentientturtle.util.TimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
- * Module that provides commands to run votes, as well as exposing an API for other modules to run votes.
+ * Module that provides commands to run votes, as well as exposing an API for other modules to run votes.<br>
+ * Running votes are checkpointed to a {@link VoteLog}, and restored after a restart; Completion callbacks cannot be restored, restored votes only update their message when they end.<br>
+ * Vote menus are {@link StatelessComponents}, carrying the vote ID, so they keep working after a restart without re-binding handlers.
  */
-public class Voting extends BotModule {
+public class Voting extends BotModule implements StaticLoaded {
     private static final Logger logger = LoggerFactory.getLogger(Voting.class);
     private static final long MAXIMUM_VOTE_DURATION_HOURS = 24;
+    private static final long LIVE_EDIT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);    // Well within Discord's per-message edit rate limit
+    private static final long HANDLER_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);     // Keeps select handlers of votes from before stateless menus alive until the vote has certainly ended
+    private static final String SELECT_KEY = "vote";
     private static final AtomicLong voteCount = new AtomicLong(0);
     private static final ConcurrentHashMap<Long, Vote> runningVotes = new ConcurrentHashMap<>();
     private static final Random random = new Random();
+    private static final VoteLog voteLog;
 
     private static class Vote {
-        private final int[] results;
-        private final Set<Long> votedUsers;
+        private final AtomicIntegerArray results;
+        private final ConcurrentLongSet votedUsers;
 
         public final String name;
         public final List<String> options;
         public final Consumer<String> onComplete;
         public final long channelID;
         public final long messageID;
+        public final long endEpochMillis;
+        public final boolean isLive;
+        public final BotPermission permission;
 
-        public Vote(String name, List<String> options, Consumer<String> onComplete, long channelID, long messageID) {
+        // Live results; Ballots bump the version, and edits are skipped if the rendered version is current
+        private final AtomicLong version = new AtomicLong(0);
+        private final AtomicBoolean isEditScheduled = new AtomicBoolean(false);
+        private long renderedVersion = 0;   // Guarded by this
+        private long lastEditMillis = 0;    // Guarded by this
+        private boolean isEnded = false;    // Guarded by this
+
+        public Vote(String name, List<String> options, Consumer<String> onComplete, long channelID, long messageID, long endEpochMillis, boolean isLive, BotPermission permission) {
             this.name = name;
-            this.results = new int[options.size()];
+            this.results = new AtomicIntegerArray(options.size());
             this.options = Collections.unmodifiableList(options);
             this.onComplete = onComplete;
             this.channelID = channelID;
             this.messageID = messageID;
-            votedUsers = Collections.synchronizedSet(new HashSet<>());
+            this.endEpochMillis = endEpochMillis;
+            this.isLive = isLive;
+            this.permission = permission;
+            votedUsers = new ConcurrentLongSet();
         }
     }
 
+    static {
+        try {
+            voteLog = new VoteLog(Persistence.dataFile("votes.log"), new VoteLog.Replay() {
+                @Override
+                public void start(long voteID, String title, long channelID, long messageID, String selectID, long endEpochMillis, String permission, List<String> options, boolean isLive) {
+                    BotPermission votePermission;
+                    try {
+                        votePermission = BotPermission.decode(permission);
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("Vote #" + voteID + " has an invalid permission; Restricting it to users of /runvote", e);
+                        votePermission = BotPermission.STRING("cmd:runvote");
+                    }
+                    runningVotes.put(voteID, new Vote(title, options, winner -> {}, channelID, messageID, endEpochMillis, isLive, votePermission));
+                    voteCount.accumulateAndGet(voteID + 1, Math::max);
+                    if (!StatelessComponents.isStateless(selectID)) {     // Votes started before stateless menus need their handler restored
+                        try {
+                            SelectionMenuManager.bindSelect(
+                                    selectID,
+                                    selectHandler(voteID),
+                                    () -> !runningVotes.containsKey(voteID),
+                                    votePermission,
+                                    Math.max(0, endEpochMillis - System.currentTimeMillis()) + HANDLER_GRACE_MILLIS,
+                                    TimeUnit.MILLISECONDS
+                            );
+                        } catch (IllegalArgumentException e) {
+                            logger.warn("Vote #" + voteID + " has an invalid selection menu ID; It can no longer be voted on", e);
+                        }
+                    }
+                }
+
+                @Override
+                public void ballot(long voteID, long userID, int[] selectedOptions) {
+                    var vote = runningVotes.get(voteID);
+                    if (vote != null && vote.votedUsers.add(userID)) {
+                        for (int option : selectedOptions) {
+                            if (option < vote.results.length()) vote.results.incrementAndGet(option);
+                        }
+                    }
+                }
+
+                @Override
+                public void end(long voteID) {
+                    runningVotes.remove(voteID);
+                }
+            });
+        } catch (IOException e) {
+            throw new StaticInitException("Could not load vote log", e);
+        }
+        StatelessComponents.registerSelect(SELECT_KEY, (selectionMenuEvent, state) -> {
+            long voteID;
+            try {
+                voteID = Long.parseLong(state);
+            } catch (NumberFormatException e) {
+                return;
+            }
+            var vote = runningVotes.get(voteID);
+            if (vote == null || (selectionMenuEvent.getMember() != null && vote.permission.memberHasPermission(selectionMenuEvent.getMember()))) {   // Permission differs per vote, so is checked here instead of by StatelessComponents
+                selectHandler(voteID).accept(selectionMenuEvent);
+            }
+        }, BotPermission.EVERYONE());
+        if (!runningVotes.isEmpty()) logger.info("Restored " + runningVotes.size() + " running votes");
+
+        Core.onPhase(Core.Phase.GATEWAY_READY, () -> runningVotes.forEach((voteID, vote) -> Scheduling.schedule(
+                Scheduling.Pool.INTERACTIVE,
+                Voting.class,
+                () -> endVote(voteID),
+                Math.max(0, vote.endEpochMillis - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS
+        )));
+        var flushDaemon = Scheduling.scheduleWithFixedDelay(Scheduling.Pool.BACKGROUND, Voting.class, () -> {
+            try {
+                voteLog.flush();
+            } catch (IOException e) {
+                logger.error("Could not write vote log", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        Shutdown.registerHook(() -> {
+            flushDaemon.cancel(false);
+            try {
+                voteLog.close();
+            } catch (IOException e) {
+                logger.error("Could not close vote log", e);
+            }
+        });
+    }
+
     public static void runVote(String voteTitle, MessageChannel channel, List<String> options, Consumer<String> onComplete, long voteDuration, TimeUnit durationUnit, BotPermission votePermission) throws IllegalArgumentException {
+        runVote(voteTitle, channel, options, onComplete, voteDuration, durationUnit, votePermission, false);
+    }
+
+    /**
+     * @param liveResults If true, the vote message shows the current results while the vote runs; Edits are made at most once every {@link #LIVE_EDIT_INTERVAL_MILLIS}
+     */
+    public static void runVote(String voteTitle, MessageChannel channel, List<String> options, Consumer<String> onComplete, long voteDuration, TimeUnit durationUnit, BotPermission votePermission, boolean liveResults) throws IllegalArgumentException {
         if (options.size() < 1) throw new IllegalArgumentException("Too few options!");
         if (options.size() > 25) throw new IllegalArgumentException("Too many options!");
         long voteID = voteCount.getAndIncrement();
+        long endEpochMillis = System.currentTimeMillis() + durationUnit.toMillis(voteDuration);
 
+        var selectMenu = StatelessComponents.newSelect("Select options to vote", SELECT_KEY, String.valueOf(voteID), 0, Integer.MAX_VALUE, options.toArray(String[]::new));
         channel.sendMessage(
                 new MessageBuilder()
                         .append(voteTitle, MessageBuilder.Formatting.BOLD).append('\n')
                         .append("Vote lasts ").append(TimeFormat.formatWDHMS(voteDuration, durationUnit)).append(".\n")
                         .append("Use selection box to vote, you may select multiple options.")
-                        .setActionRows(ActionRow.of(SelectionMenuManager.newSelect(
-                                "Select options to vote",
-                                selectionMenuEvent -> {
-                                    var vote = runningVotes.get(voteID);
-                                    if (vote != null) {
-                                        if (vote.votedUsers.add(selectionMenuEvent.getUser().getIdLong())) {
-                                            selectionMenuEvent.deferReply(true).setContent("Vote accepted!").queue();
-                                            for (String selectedValue : selectionMenuEvent.getValues()) {
-                                                vote.results[Integer.parseInt(selectedValue)]++;
-                                            }
-                                        } else {
-                                            selectionMenuEvent.deferReply(true).setContent("You have already voted!").queue();
-                                        }
-                                    } else {
-                                        selectionMenuEvent.deferReply(true).setContent("Vote has already ended!").queue();
-                                    }
-                                },
-                                () -> runningVotes.containsKey(voteID),
-                                votePermission,
-                                options.toArray(String[]::new)
-                        )))
+                        .append(liveResults ? "\n\n" + renderResults(options, new int[options.size()]) : "")
+                        .setActionRows(ActionRow.of(selectMenu))
                         .build()
-        ).queue(message -> runningVotes.put(voteID, new Vote(voteTitle, options, onComplete, channel.getIdLong(), message.getIdLong())));
-
-        Scheduling.schedule(
-                () -> {
-                    var vote = runningVotes.remove(voteID);
-                    if (vote != null) {
-
-                        var maxVotes = Arrays.stream(vote.results).max().orElse(0);
-                        List<Integer> winners = new ArrayList<>(vote.results.length);
-                        for (int i = 0; i < vote.results.length; i++) {
-                            if (vote.results[i] == maxVotes) {
-                                winners.add(i);
-                            }
-                        }
-                        var winningOption = vote.options.get(winners.get(random.nextInt(winners.size())));
-
-                        // noinspection ConstantConditions       #getJDA May not NPE; This is only ever called after JDA has initialised
-                        var textChannel = Core.getJDA().getTextChannelById(vote.channelID);
-                        if (textChannel != null) {
-                            textChannel.retrieveMessageById(vote.messageID)
-                                    .complete()
-                                    .editMessage(
-                                            new MessageBuilder()
-                                                    .append(vote.name, MessageBuilder.Formatting.BOLD).append('\n')
-                                                    .append("Vote has ended.\n")
-                                                    .append("Winner: ").append(winningOption, MessageBuilder.Formatting.BLOCK)
-                                                    .build()
-                                    )
-                                    .queue();
-                        }
+        ).queue(message -> {
+            runningVotes.put(voteID, new Vote(voteTitle, options, onComplete, channel.getIdLong(), message.getIdLong(), endEpochMillis, liveResults, votePermission));
+            try {
+                voteLog.start(voteID, voteTitle, channel.getIdLong(), message.getIdLong(), selectMenu.getId(), endEpochMillis, votePermission.encode(), options, liveResults);
+            } catch (IOException e) {
+                logger.error("Could not checkpoint vote #" + voteID + "; It will not survive a restart", e);
+            }
+        });
 
-                        vote.onComplete.accept(winningOption);
-                    } else {
-                        logger.warn("Vote #" + voteID + " was deleted before finishing!");
+        Scheduling.schedule(Scheduling.Pool.INTERACTIVE, Voting.class, () -> endVote(voteID), voteDuration, durationUnit);
+    }
+
+    private static Consumer<SelectionMenuEvent> selectHandler(long voteID) {
+        return selectionMenuEvent -> {
+            var vote = runningVotes.get(voteID);
+            if (vote != null) {
+                long userID = selectionMenuEvent.getUser().getIdLong();
+                if (vote.votedUsers.add(userID)) {
+                    selectionMenuEvent.deferReply(true).setContent("Vote accepted!").queue();
+                    int[] selectedOptions = selectionMenuEvent.getValues().stream().mapToInt(Integer::parseInt).toArray();
+                    for (int option : selectedOptions) {
+                        vote.results.incrementAndGet(option);
                     }
-                },
-                voteDuration,
-                durationUnit
-        );
+                    try {
+                        voteLog.ballot(voteID, userID, selectedOptions);
+                    } catch (IOException e) {
+                        logger.error("Could not checkpoint ballot for vote #" + voteID, e);
+                    }
+                    if (vote.isLive) {
+                        vote.version.incrementAndGet();
+                        scheduleLiveEdit(vote);
+                    }
+                } else {
+                    selectionMenuEvent.deferReply(true).setContent("You have already voted!").queue();
+                }
+            } else {
+                selectionMenuEvent.deferReply(true).setContent("Vote has already ended!").queue();
+            }
+        };
+    }
+
+    /**
+     * Schedules an edit of a live vote's message, unless one is already scheduled; Edits are spaced at least {@link #LIVE_EDIT_INTERVAL_MILLIS} apart
+     */
+    private static void scheduleLiveEdit(Vote vote) {
+        if (!vote.isEditScheduled.compareAndSet(false, true)) return;   // The scheduled edit will include this change
+        long delay;
+        synchronized (vote) {
+            delay = Math.max(0, vote.lastEditMillis + LIVE_EDIT_INTERVAL_MILLIS - System.currentTimeMillis());
+        }
+        Scheduling.schedule(Scheduling.Pool.BACKGROUND, Voting.class, () -> editLiveResults(vote), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void editLiveResults(Vote vote) {
+        vote.isEditScheduled.set(false);    // Cleared before reading the version; Ballots from here on schedule another edit
+        long version = vote.version.get();
+        synchronized (vote) {
+            if (vote.isEnded || version == vote.renderedVersion) return;
+            // noinspection ConstantConditions       #getJDA May not NPE; This is only ever called after JDA has initialised
+            var textChannel = Core.getJDA().getTextChannelById(vote.channelID);
+            if (textChannel == null) return;
+            textChannel.editMessageById(
+                    vote.messageID,
+                    new MessageBuilder()
+                            .append(vote.name, MessageBuilder.Formatting.BOLD).append('\n')
+                            .append("Vote ends in ").append(TimeFormat.formatWDHMS(Math.max(0, vote.endEpochMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS)).append(".\n")
+                            .append("Use selection box to vote, you may select multiple options.\n\n")
+                            .append(renderResults(vote.options, snapshot(vote)))
+                            .getStringBuilder()     // Edit content only, so the select menu is kept
+            ).queue();  // Edits to the same message are sent in order, so the final edit of endVote always lands last
+            vote.renderedVersion = version;
+            vote.lastEditMillis = System.currentTimeMillis();
+        }
+    }
+
+    private static String renderResults(List<String> options, int[] results) {
+        var builder = new StringBuilder("Current results:");
+        for (int i = 0; i < options.size(); i++) {
+            builder.append("\n").append(options.get(i)).append(": ").append(results[i]);
+        }
+        return builder.toString();
+    }
+
+    private static int[] snapshot(Vote vote) {
+        int[] results = new int[vote.results.length()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = vote.results.get(i);
+        }
+        return results;
+    }
+
+    private static void endVote(long voteID) {
+        var vote = runningVotes.remove(voteID);
+        if (vote != null) {
+            synchronized (vote) {
+                vote.isEnded = true;
+            }
+            int[] results = snapshot(vote);
+            var maxVotes = Arrays.stream(results).max().orElse(0);
+            List<Integer> winners = new ArrayList<>(results.length);
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == maxVotes) {
+                    winners.add(i);
+                }
+            }
+            var winningOption = vote.options.get(winners.get(random.nextInt(winners.size())));
+
+            // noinspection ConstantConditions       #getJDA May not NPE; This is only ever called after JDA has initialised
+            var textChannel = Core.getJDA().getTextChannelById(vote.channelID);
+            if (textChannel != null) {
+                textChannel.retrieveMessageById(vote.messageID)
+                        .complete()
+                        .editMessage(
+                                new MessageBuilder()
+                                        .append(vote.name, MessageBuilder.Formatting.BOLD).append('\n')
+                                        .append("Vote has ended.\n")
+                                        .append("Winner: ").append(winningOption, MessageBuilder.Formatting.BLOCK)
+                                        .build()
+                        )
+                        .queue();
+            }
+
+            try {
+                voteLog.end(voteID);
+            } catch (IOException e) {
+                logger.error("Could not checkpoint end of vote #" + voteID, e);
+            }
+            vote.onComplete.accept(winningOption);
+        } else {
+            logger.warn("Vote #" + voteID + " was deleted before finishing!");
+        }
     }
 
     @Command(description = "Run a vote")
@@ -131,7 +328,8 @@ public class Voting extends BotModule {
             CommandCall commandCall,
             @Command.Parameter(name = "duration", description = "Duration of the vote") String durationString,
             @Command.Parameter(name = "options", description = "Options to choose between, separated by commas.") String optionString,
-            @Command.Parameter(name = "role", description = "Only users from this role may vote", optional = true) Role permissionRole
+            @Command.Parameter(name = "role", description = "Only users from this role may vote", optional = true) Role permissionRole,
+            @Command.Parameter(name = "live", description = "Show results while the vote is running", optional = true) Boolean liveResults
     ) {
         try {
             long duration = Long.parseLong(durationString, 0, durationString.length() - 1, 10);
@@ -163,7 +361,7 @@ public class Voting extends BotModule {
                     } else {
                         votePermission = BotPermission.EVERYONE();
                     }
-                    runVote("User vote by " + member.getEffectiveName(), commandCall.getChannel(), options, s -> {}, duration, durationUnit, votePermission);
+                    runVote("User vote by " + member.getEffectiveName(), commandCall.getChannel(), options, s -> {}, duration, durationUnit, votePermission, liveResults != null && liveResults);
                 } else {
                     commandCall.error("⚠ You must specify at least two options");
                 }
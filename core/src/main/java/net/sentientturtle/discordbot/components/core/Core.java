@@ -17,12 +17,17 @@ import net.sentientturtle.discordbot.components.persistence.PersistenceException
 import net.sentientturtle.discordbot.components.persistence.PersistentObject;
 import net.sentientturtle.discordbot.loader.Loader;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.security.auth.login.LoginException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main class of bot; Stitches together various components
@@ -31,10 +36,30 @@ public class Core implements StaticLoaded {
     private static final Logger logger = LoggerFactory.getLogger(Core.class);
     private static JDA jda;
     private static boolean isInitialised = false;
+    /**
+     * Training runs go through startup without logging in and exit afterwards; Used to generate the class-data-sharing archive
+     */
+    private static final boolean isTrainingRun = Boolean.getBoolean("net.sentientturtle.discordbot.trainingrun");
     private static final CoreSettings settings;
+    private static final Map<Phase, CompletableFuture<Void>> phases = new EnumMap<>(Phase.class);
+
+    /**
+     * Lifecycle phases of the bot; Startup phases are reached in declaration order, and only if startup gets that far.<br>
+     * Training runs do not reach {@link #GATEWAY_READY} or {@link #COMMANDS_REGISTERED}.
+     */
+    public enum Phase {
+        STATIC_LOADED,          // All StaticLoaded classes have been initialised
+        MODULES_LOADED,         // Enabled modules have been loaded; Their commands are only built for registration, see ModuleManager#buildCommands
+        GATEWAY_READY,          // JDA has connected and is ready; Core#getJDA no longer returns null
+        COMMANDS_REGISTERED,    // Commands have been submitted for registration with the target guild; Not reached if the bot is not in the target guild
+        SHUTTING_DOWN           // Shutdown has been requested; Reached before shutdown hooks run
+    }
+
     static {
+        for (Phase phase : Phase.values()) phases.put(phase, new CompletableFuture<>());
+
         settings = Persistence.loadObject(CoreSettings.class, CoreSettings::new);
-        if (settings.targetGuild == -1 || settings.token.equals("[NO TOKEN]")) throw new StaticInitException("Target guild ID and API token must be set!");
+        if (!isTrainingRun && (settings.targetGuild == -1 || settings.token.equals("[NO TOKEN]"))) throw new StaticInitException("Target guild ID and API token must be set!");
 
         HealthCheck.addStatic(
                 Core.class,
@@ -57,29 +82,24 @@ public class Core implements StaticLoaded {
         if (isInitialised) return;
         try {
             Loader.ensureStaticLoad();
+            enterPhase(Phase.STATIC_LOADED);
+            enterPhase(Phase.MODULES_LOADED);   // Modules are loaded during the static initialisation of ModuleManager
 
             EventManager eventManager = new EventManager();
 
+            if (isTrainingRun) {
+                trainingRun(eventManager);
+                return;
+            }
 
-            jda = JDABuilder
-                          .create(
-                                  GatewayIntent.GUILD_EMOJIS,
-                                  GatewayIntent.GUILD_VOICE_STATES,
-                                  GatewayIntent.GUILD_MESSAGES,
-                                  GatewayIntent.DIRECT_MESSAGE_REACTIONS,
-                                  GatewayIntent.DIRECT_MESSAGES,
-                                  GatewayIntent.DIRECT_MESSAGE_REACTIONS
-                          )
-                          .setChunkingFilter(ChunkingFilter.NONE)
-                          .disableCache(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS)
-                          .setToken(settings.token)
-                          .setAutoReconnect(true)
-                          .setEventManager(eventManager)
-                          .setIdle(false)
-                          .setStatus(OnlineStatus.ONLINE)
-                          .build();
-
-            jda.awaitReady();
+            try (var ignored = StartupTimeline.begin("JDA build")) {
+                jda = createBuilder(eventManager).build();
+            }
+
+            try (var ignored = StartupTimeline.begin("JDA awaitReady")) {
+                jda.awaitReady();
+            }
+            enterPhase(Phase.GATEWAY_READY);
 
             AccountManager manager = jda.getSelfUser().getManager();
             if (!manager.getSelfUser().getName().equals(settings.username)) {
@@ -94,12 +114,22 @@ public class Core implements StaticLoaded {
                 } else {
                     logger.info("Bot is connected to target guild: " + guild.getName());
 
-                    ModuleManager.registerCommands();
+                    try (var ignored = StartupTimeline.begin("Command registration")) {
+                        ModuleManager.registerCommands();
+                    }
+                    enterPhase(Phase.COMMANDS_REGISTERED);
+                }
+            }
+
+            if (settings.warmUp) {
+                try (var ignored = StartupTimeline.begin("JIT warm-up")) {
+                    WarmUp.run(Duration.ofSeconds(settings.warmUpMaxSeconds));
                 }
             }
 
             Shutdown.registerHook(jda::shutdown);
             isInitialised = true;
+            StartupTimeline.finish();
             logger.info("Bot initialised!");
             System.out.println("Bot initialised!");
         } catch (Exception e) {
@@ -109,6 +139,86 @@ public class Core implements StaticLoaded {
         }
     }
 
+    private static JDABuilder createBuilder(EventManager eventManager) {
+        return JDABuilder
+                       .create(
+                               GatewayIntent.GUILD_EMOJIS,
+                               GatewayIntent.GUILD_VOICE_STATES,
+                               GatewayIntent.GUILD_MESSAGES,
+                               GatewayIntent.DIRECT_MESSAGE_REACTIONS,
+                               GatewayIntent.DIRECT_MESSAGES,
+                               GatewayIntent.DIRECT_MESSAGE_REACTIONS
+                       )
+                       .setChunkingFilter(ChunkingFilter.NONE)
+                       .disableCache(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS)
+                       .setToken(settings.token)
+                       .setAutoReconnect(true)
+                       .setEventManager(eventManager)
+                       .setIdle(false)
+                       .setStatus(OnlineStatus.ONLINE);
+    }
+
+    /**
+     * Finishes startup without connecting to Discord, then exits.<br>
+     * JDA 4 offers no way to redirect its REST and gateway endpoints, so login is skipped; The JDA builder and command tree are still constructed so their classes are covered.
+     */
+    private static void trainingRun(EventManager eventManager) {
+        logger.info("Training run; Skipping login");
+        try (var ignored = StartupTimeline.begin("JDA build (training run)")) {
+            createBuilder(eventManager);
+        }
+        try (var ignored = StartupTimeline.begin("Command registration (training run)")) {
+            ModuleManager.buildCommands();
+        }
+        StartupTimeline.finish();
+        logger.info("Training run complete");
+        Shutdown.shutdownAll(false, 0);
+        System.exit(0);
+    }
+
+    /**
+     * Future completed when the specified phase is reached<br>
+     * If shutdown occurs before a startup phase is reached, that phase's future is cancelled.
+     * @param phase Phase to wait for
+     * @return Future for the phase; Completing or cancelling the returned future does not affect the phase
+     */
+    public static CompletableFuture<Void> phase(@NotNull Phase phase) {
+        return phases.get(phase).copy();
+    }
+
+    /**
+     * @return True if the specified phase has been reached
+     */
+    public static boolean hasReachedPhase(@NotNull Phase phase) {
+        var future = phases.get(phase);
+        return future.isDone() && !future.isCancelled();
+    }
+
+    /**
+     * Registers a listener to be called when the specified phase is reached<br>
+     * Listeners are called in the thread that reaches the phase, or immediately in the current thread if the phase has already been reached; Long-running work should be handed off to {@link Scheduling}.<br>
+     * Listeners are not called if the phase is never reached.
+     * @param phase Phase to listen for
+     * @param listener Listener to call
+     */
+    public static void onPhase(@NotNull Phase phase, @NotNull Runnable listener) {
+        phases.get(phase).thenRun(() -> {
+            try {
+                listener.run();
+            } catch (Throwable t) {
+                logger.error("Exception in listener for lifecycle phase " + phase, t);
+            }
+        });
+    }
+
+    static void enterPhase(Phase phase) {
+        logger.debug("Entering lifecycle phase " + phase);
+        phases.get(phase).complete(null);
+        if (phase == Phase.SHUTTING_DOWN) {
+            phases.values().forEach(future -> future.cancel(false));  // Startup phases that were not reached will not be reached anymore; Does nothing to completed futures
+        }
+    }
+
     public static @Nullable JDA getJDA() {
         return jda;
     }
@@ -125,6 +235,10 @@ public class Core implements StaticLoaded {
         return settings.targetGuild;
     }
 
+    public static boolean isTrainingRun() {
+        return isTrainingRun;
+    }
+
     public static boolean isRebootEnabled() {
         return settings.rebootEnabled;
     }
@@ -134,5 +248,7 @@ public class Core implements StaticLoaded {
         public String username = "Generic Bot Username";
         public Long targetGuild = (long) -1;
         public boolean rebootEnabled = false;
+        public boolean warmUp = false;          // Run the JIT warm-up phase before marking the bot as initialised
+        public int warmUpMaxSeconds = 20;
     }
 }
@@ -0,0 +1,207 @@
+package net.sentientturtle.discordbot.components.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.sentientturtle.discordbot.components.StaticInitException;
+import net.sentientturtle.discordbot.components.core.JobLog.Job;
+import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
+import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
+import net.sentientturtle.discordbot.components.persistence.Persistence;
+import net.sentientturtle.discordbot.components.persistence.PersistentObject;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Scheduler for jobs that survive restarts<br>
+ * Jobs are a job type name and a {@link PersistentObject} payload, stored in a {@link JobLog} in the data folder.<br>
+ * Jobs run at least once; A job is only marked finished after its handler returns, so a job that was running during a crash runs again after restart.<br>
+ * Jobs are not run before a handler for their type is registered and the gateway is ready. Overdue jobs are released in due-time order at a limited rate.<br>
+ * Not StaticLoaded; The job log is only opened once the scheduler is first used, so the bot does not create or sync it unless a module uses durable jobs.
+ */
+public class DurableScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(DurableScheduler.class);
+    private static final int CATCH_UP_PER_SECOND = 5;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BASE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static final File logFile = Persistence.dataFile("jobs.log");
+    private static final HashMap<String, Handler<?>> handlers = new HashMap<>();
+    private static final JobLog jobs;   // Guarded by DurableScheduler.class
+    private static boolean isShutdown = false;
+
+    private record Handler<T extends PersistentObject>(Class<T> payloadClass, Consumer<T> consumer) {}
+
+    static {
+        try (var ignored = StartupTimeline.begin("Durable job log replay")) {
+            jobs = new JobLog(logFile);
+        } catch (IOException e) {
+            throw new StaticInitException("Could not load durable job log: " + logFile, e);
+        }
+        logger.info("Loaded " + jobs.jobs().size() + " pending durable jobs");
+
+        Shutdown.registerHook(DurableScheduler::shutdown);
+        HealthCheck.addStatic(
+                DurableScheduler.class,
+                () -> {
+                    synchronized (DurableScheduler.class) {
+                        if (isShutdown) return HealthStatus.STOPPED;
+                        return jobs.isWriteFailed() ? HealthStatus.ERROR_CRITICAL : HealthStatus.RUNNING;
+                    }
+                },
+                () -> {
+                    synchronized (DurableScheduler.class) {
+                        long now = System.currentTimeMillis();
+                        long overdue = jobs.jobs().stream().filter(job -> job.dueEpochMillis <= now).count();
+                        return Optional.of(jobs.jobs().size() + " jobs pending, " + overdue + " overdue" + (jobs.isWriteFailed() ? "; Error writing job log, check log" : ""));
+                    }
+                }
+        );
+        logger.info("Module initialised!");
+    }
+
+    /**
+     * Registers the handler for a job type; Pending jobs of that type are scheduled once the gateway is ready<br>
+     * Handlers may be called more than once for the same job, and should tolerate this.
+     * @param type Job type name
+     * @param payloadClass Class of the job payload
+     * @param handler Handler to run jobs with; An exception causes the job to be retried later
+     */
+    public static synchronized <T extends PersistentObject> void registerHandler(@NotNull String type, @NotNull Class<T> payloadClass, @NotNull Consumer<T> handler) {
+        if (handlers.putIfAbsent(type, new Handler<>(payloadClass, handler)) != null) {
+            throw new IllegalStateException("Handler already registered for job type: " + type);
+        }
+        Core.onPhase(Core.Phase.GATEWAY_READY, () -> scheduleAll(type));
+    }
+
+    /**
+     * Removes the handler for a job type; Pending jobs of that type are kept, and run once a handler is registered again
+     * @param type Job type name
+     */
+    public static synchronized void removeHandler(@NotNull String type) {
+        handlers.remove(type);
+        for (Job job : jobs.pending(type)) {
+            if (job.future != null) {
+                job.future.cancel(false);
+                job.future = null;
+            }
+        }
+    }
+
+    /**
+     * Schedules a durable job; The job is written to disk before this method returns
+     * @param type Job type name
+     * @param payload Job payload; Must be serializable by Jackson
+     * @param dueTime Time at which to run the job
+     * @return ID of the job, for cancellation
+     * @throws IOException If the job could not be written
+     */
+    public static synchronized long schedule(@NotNull String type, @NotNull PersistentObject payload, @NotNull Instant dueTime) throws IOException {
+        if (isShutdown) throw new IllegalStateException("DurableScheduler has shut down");
+        var job = jobs.add(type, dueTime.toEpochMilli(), jsonMapper.writeValueAsBytes(payload));
+        if (handlers.containsKey(type) && Core.hasReachedPhase(Core.Phase.GATEWAY_READY)) {
+            scheduleJob(job, Math.max(0, job.dueEpochMillis - System.currentTimeMillis()));
+        }
+        return job.id;
+    }
+
+    /**
+     * Cancels a pending job
+     * @param id ID of the job
+     * @return True if the job was pending, false if it had already finished or did not exist
+     */
+    public static synchronized boolean cancel(long id) {
+        var job = jobs.get(id);
+        if (job == null) return false;
+        if (job.future != null) job.future.cancel(false);
+        finish(job);
+        return true;
+    }
+
+    /**
+     * Schedules all pending jobs of a type; Overdue jobs are spaced out to {@value CATCH_UP_PER_SECOND} per second
+     */
+    private static synchronized void scheduleAll(String type) {
+        if (isShutdown || !handlers.containsKey(type)) return;
+        long now = System.currentTimeMillis();
+        int overdue = 0;
+        for (Job job : jobs.pending(type)) {
+            if (job.future != null) continue;
+            if (job.dueEpochMillis <= now) {
+                scheduleJob(job, overdue++ * 1000L / CATCH_UP_PER_SECOND);
+            } else {
+                scheduleJob(job, job.dueEpochMillis - now);
+            }
+        }
+        if (overdue > 0) logger.info("Catching up on " + overdue + " overdue jobs of type [" + type + "]");
+    }
+
+    /**
+     * Schedules a job; Its runs are credited to the class that registered the job type's handler
+     */
+    private static void scheduleJob(Job job, long delayMillis) {
+        var handler = handlers.get(job.type);
+        Class<?> owner = handler != null ? handler.consumer.getClass() : DurableScheduler.class;
+        job.future = Scheduling.schedule(Scheduling.Pool.INTERACTIVE, owner, () -> run(job), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void run(Job job) {
+        Handler<?> handler;
+        synchronized (DurableScheduler.class) {
+            if (!jobs.contains(job.id)) return;  // Cancelled
+            job.future = null;
+            handler = handlers.get(job.type);
+            if (handler == null) return;    // Handler removed; Job remains pending
+            job.attempts++;
+        }
+        try {
+            runHandler(handler, job);
+            synchronized (DurableScheduler.class) {
+                if (jobs.contains(job.id)) finish(job);
+            }
+        } catch (Throwable t) {
+            synchronized (DurableScheduler.class) {
+                if (job.attempts >= MAX_ATTEMPTS) {
+                    logger.error("Durable job #" + job.id + " [" + job.type + "] failed " + job.attempts + " times; Dropping job", t);
+                    if (jobs.contains(job.id)) finish(job);
+                } else {
+                    long retryMillis = RETRY_BASE_MILLIS << (job.attempts - 1);
+                    logger.warn("Durable job #" + job.id + " [" + job.type + "] failed; Retrying in " + TimeUnit.MILLISECONDS.toSeconds(retryMillis) + "s", t);
+                    if (jobs.contains(job.id) && !isShutdown) scheduleJob(job, retryMillis);
+                }
+            }
+        }
+    }
+
+    private static <T extends PersistentObject> void runHandler(Handler<T> handler, Job job) throws IOException {
+        handler.consumer.accept(jsonMapper.readValue(job.payload, handler.payloadClass));
+    }
+
+    private static void finish(Job job) {
+        if (isShutdown) return;     // Job log is closed; The job runs again after restart
+        try {
+            jobs.finish(job);
+        } catch (IOException e) {
+            logger.error("Could not mark durable job #" + job.id + " as finished; It may run again after restart", e);
+        }
+    }
+
+    private static synchronized void shutdown() {
+        isShutdown = true;
+        jobs.jobs().forEach(job -> {
+            if (job.future != null) job.future.cancel(false);
+        });
+        try {
+            jobs.close();
+        } catch (IOException e) {
+            logger.error("Could not close durable job log", e);
+        }
+    }
+}
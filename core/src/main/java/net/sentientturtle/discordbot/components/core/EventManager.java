@@ -5,6 +5,7 @@ import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
 import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import net.dv8tion.jda.api.events.message.priv.PrivateMessageReceivedEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
 import net.dv8tion.jda.api.events.self.SelfUpdateAvatarEvent;
 import net.dv8tion.jda.api.events.self.SelfUpdateNameEvent;
 import net.dv8tion.jda.api.hooks.IEventManager;
@@ -12,6 +13,7 @@ import net.sentientturtle.discordbot.components.interaction.ButtonManager;
 import net.sentientturtle.discordbot.components.interaction.SelectionMenuManager;
 import net.sentientturtle.discordbot.components.interaction.SlashCommandManager;
 import net.sentientturtle.discordbot.components.module.ModuleManager;
+import net.sentientturtle.discordbot.components.permission.BotPermission;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -60,6 +62,8 @@ public class EventManager implements StaticLoaded, IEventManager {
             } else if (event instanceof PrivateMessageReceivedEvent privateMessageReceivedEvent) {
                 privateMessageReceivedEvent.getChannel()
                         .sendMessage("Commands may not be issued through private messages, please issue commands in the Guild!").queue();
+            } else if (event instanceof RoleDeleteEvent) {     // Member events require the privileged members intent; Role changes of members are left to the decision cache's expiry
+                BotPermission.invalidateAll();
             } else if (event instanceof SelfUpdateAvatarEvent) {
                 logger.info("Updated avatar!");
             } else if (event instanceof SelfUpdateNameEvent) {
@@ -0,0 +1,197 @@
+package net.sentientturtle.discordbot.components.core;
+
+import net.sentientturtle.util.RecordLog;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Pending jobs of the {@link DurableScheduler}, and the {@link RecordLog} they are stored in<br>
+ * Each job is a scheduled record, followed by a finished record once it completes or is cancelled; The log is compacted to only pending jobs when it is opened, and when it holds mostly finished jobs.<br>
+ * A failed write may leave a partial record, which would end replay before any later record; The log is rewritten from the pending jobs before the next record is appended.<br>
+ * Not thread-safe; Callers must synchronize.
+ */
+final class JobLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JobLog.class);
+    private static final byte RECORD_SCHEDULED = 1;
+    private static final byte RECORD_FINISHED = 2;
+    private static final int COMPACTION_THRESHOLD = 1024;    // Minimum number of finished-job records before the log is compacted
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private final TreeMap<Long, Job> jobs = new TreeMap<>();     // Pending jobs by ID
+    private final RecordLog log;
+    private long nextID = 1;
+    private int finishedRecords = 0;
+    private boolean isWriteFailed = false;
+
+    /**
+     * Pending job; Attempts and future are scheduler state, and are not stored
+     */
+    static final class Job {
+        final long id;
+        final String type;
+        final long dueEpochMillis;
+        final byte[] payload;
+        int attempts = 0;
+        ScheduledFuture<?> future = null;
+
+        private Job(long id, String type, long dueEpochMillis, byte[] payload) {
+            this.id = id;
+            this.type = type;
+            this.dueEpochMillis = dueEpochMillis;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Opens the log, replaying and compacting its contents
+     */
+    JobLog(@NotNull File file) throws IOException {
+        log = new RecordLog(file, MAX_RECORD_LENGTH);
+        boolean isComplete = log.replay(body -> {
+            var record = new DataInputStream(new ByteArrayInputStream(body));
+            switch (record.readByte()) {
+                case RECORD_SCHEDULED -> {
+                    long id = record.readLong();
+                    long dueEpochMillis = record.readLong();
+                    String type = record.readUTF();
+                    byte[] payload = record.readNBytes(record.readInt());
+                    jobs.put(id, new Job(id, type, dueEpochMillis, payload));
+                    nextID = Math.max(nextID, id + 1);
+                }
+                case RECORD_FINISHED -> jobs.remove(record.readLong());
+                default -> logger.warn("Ignoring unknown record type in job log");
+            }
+        });
+        if (!isComplete) logger.warn("Ignoring incomplete record at end of job log");
+        compact();
+    }
+
+    /**
+     * Adds a job, and forces it to disk
+     * @return The added job
+     * @throws IOException If the job could not be written; The job is not added
+     */
+    Job add(@NotNull String type, long dueEpochMillis, byte[] payload) throws IOException {
+        var job = new Job(nextID++, type, dueEpochMillis, payload);
+        write(scheduledRecord(job));
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    /**
+     * Removes a pending job, and forces its finished record to disk
+     * @throws IOException If the finished record could not be written; The job is removed regardless, and may be run again after restart
+     */
+    void finish(@NotNull Job job) throws IOException {
+        if (jobs.remove(job.id) == null) return;
+        write(RecordLog.body(out -> {
+            out.writeByte(RECORD_FINISHED);
+            out.writeLong(job.id);
+        }));
+        finishedRecords++;
+        if (finishedRecords >= COMPACTION_THRESHOLD && finishedRecords > jobs.size()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.error("Could not compact durable job log", e);
+            }
+        }
+    }
+
+    /**
+     * @return The pending job with the specified ID, or null
+     */
+    Job get(long id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return True if the job with the specified ID is pending
+     */
+    boolean contains(long id) {
+        return jobs.containsKey(id);
+    }
+
+    /**
+     * @return All pending jobs, by ID
+     */
+    Collection<Job> jobs() {
+        return Collections.unmodifiableCollection(jobs.values());
+    }
+
+    /**
+     * @return Pending jobs of the specified type, by due time and then ID; The order in which overdue jobs are caught up on
+     */
+    List<Job> pending(@NotNull String type) {
+        return jobs.values()
+                       .stream()
+                       .filter(job -> job.type.equals(type))
+                       .sorted(Comparator.comparingLong((Job job) -> job.dueEpochMillis).thenComparingLong(job -> job.id))
+                       .toList();
+    }
+
+    /**
+     * @return True if the last write to the log failed, and the log has not been rewritten since
+     */
+    boolean isWriteFailed() {
+        return isWriteFailed;
+    }
+
+    /**
+     * Rewrites the log if a write failed, and closes it
+     */
+    @Override
+    public void close() throws IOException {
+        if (isWriteFailed) compact();
+        log.close();
+    }
+
+    /**
+     * Appends a record, and forces it to disk; Rewrites the log first if a previous write failed
+     */
+    private void write(byte[] body) throws IOException {
+        if (isWriteFailed) compact();
+        try {
+            log.append(body);
+            log.force();
+        } catch (IOException e) {
+            isWriteFailed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Rewrites the log with only pending jobs
+     */
+    private void compact() throws IOException {
+        List<byte[]> records = new ArrayList<>(jobs.size());
+        for (Job job : jobs.values()) records.add(scheduledRecord(job));
+        try {
+            log.rewrite(records);
+        } catch (IOException e) {
+            isWriteFailed = true;
+            throw e;
+        }
+        finishedRecords = 0;
+        isWriteFailed = false;
+    }
+
+    private static byte[] scheduledRecord(Job job) throws IOException {
+        return RecordLog.body(out -> {
+            out.writeByte(RECORD_SCHEDULED);
+            out.writeLong(job.id);
+            out.writeLong(job.dueEpochMillis);
+            out.writeUTF(job.type);
+            out.writeInt(job.payload.length);
+            out.write(job.payload);
+        });
+    }
+}
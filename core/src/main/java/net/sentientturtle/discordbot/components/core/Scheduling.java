@@ -1,76 +1,522 @@
 package net.sentientturtle.discordbot.components.core;
 
+import net.sentientturtle.discordbot.components.StaticInitException;
 import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
 import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
+import net.sentientturtle.util.TimingWheel;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Global ExecutorService for the entire bot, ensures that shutdown happens properly.
+ * Global scheduling for the entire bot, ensures that shutdown happens properly.<br>
+ * A single timer thread only dispatches scheduled tasks; Tasks themselves run on either the interactive or the background pool.<br>
+ * Pool sizes adapt to measured queue delay, within fixed bounds. Methods without a {@link Pool} parameter use {@link Pool#INTERACTIVE}.<br>
+ * One-shot tasks with a delay of at least {@value COARSE_TICKS} ticks are timed on a {@link TimingWheel}, and may run up to one tick late.<br>
+ * Task statistics are kept per owner; Methods with an owner parameter credit that class, others find the calling class by walking the stack.
  */
 public class Scheduling implements StaticLoaded {
-    private static final ScheduledThreadPoolExecutor executorService;
     private static final Logger logger = LoggerFactory.getLogger(Scheduling.class);
+    private static final double EWMA_ALPHA = 0.2;
+    private static final long RESIZE_INTERVAL_MILLIS = 1000;
+    private static final int COARSE_TICKS = 10;    // Minimum delay in ticks for the timing wheel; Keeps tick imprecision at or below 10% of the delay
+    private static final long HEALTH_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(10);  // Failures and overruns affect an owner's health for this long
+    private static final ScheduledThreadPoolExecutor timer;
+    private static final TimingWheel wheel;
+    private static final PoolExecutor interactive;
+    private static final PoolExecutor background;
+    private static final Set<ScheduledTask<?>> tasks = ConcurrentHashMap.newKeySet();
+    private static final StackWalker stackWalker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final ConcurrentHashMap<String, SubmitterStats> submitterStats = new ConcurrentHashMap<>();
+    private static final ClassValue<SubmitterStats> ownerStats = new ClassValue<>() {
+        @Override
+        protected SubmitterStats computeValue(@NotNull Class<?> type) {
+            return submitterStats.computeIfAbsent(type.getNestHost().getSimpleName(), SubmitterStats::new);
+        }
+    };
+
+    public enum Pool {
+        INTERACTIVE,    // Work a user is waiting on; Command follow-ups, reminders, vote results
+        BACKGROUND      // Housekeeping; Persistence, sweeps, presence updates. Runs at low priority
+    }
 
     static {
-        executorService = new ScheduledThreadPoolExecutor(3, new ThreadFactory() {
-            private final AtomicInteger threadNumber = new AtomicInteger(0);
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread thread = new Thread(r, "scheduling-" + threadNumber.getAndIncrement());
-                thread.setDaemon(false);
-                thread.setPriority(Thread.NORM_PRIORITY);
-                return thread;
-            }
+        timer = new ScheduledThreadPoolExecutor(1, threadFactory("scheduling-timer", Thread.NORM_PRIORITY));
+        timer.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        timer.setRemoveOnCancelPolicy(true);
+
+        long tickMillis = Long.getLong("net.sentientturtle.discordbot.timertickmillis", 100);
+        if (tickMillis <= 0) throw new StaticInitException("Timer tick must be positive: " + tickMillis);
+        wheel = new TimingWheel(tickMillis, TimeUnit.MILLISECONDS, System.nanoTime());
+        timer.scheduleAtFixedRate(() -> wheel.advance(System.nanoTime(), Runnable::run), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        interactive = new PoolExecutor("scheduling-interactive", Math.min(2, processors), processors, 50, Thread.NORM_PRIORITY);
+        background = new PoolExecutor("scheduling-background", 1, Math.max(2, processors / 2), 1000, Thread.MIN_PRIORITY);
+
+        timer.scheduleWithFixedDelay(() -> {
+            interactive.resize();
+            background.resize();
+        }, RESIZE_INTERVAL_MILLIS, RESIZE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        Shutdown.registerHook(() -> {
+            timer.shutdown();
+            tasks.forEach(task -> task.cancel(false));
+            interactive.shutdown();
+            background.shutdown();
         });
-        executorService.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
-        executorService.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
-        executorService.setRemoveOnCancelPolicy(true);
-        Shutdown.registerHook(executorService::shutdown);
         logger.info("Module initialised!");
 
         HealthCheck.addStatic(Scheduling.class, () -> {
-                if (executorService.isTerminating()) {
+                if (timer.isTerminating() || interactive.isTerminating() || background.isTerminating()) {
                     return HealthStatus.SHUTTING_DOWN;
-                } else if (executorService.isShutdown()) {
+                } else if (timer.isShutdown()) {
                     return HealthStatus.STOPPED;
                 } else {
                     return HealthStatus.RUNNING;
                 }
-        }, () -> Optional.of(executorService.getQueue().size() + " tasks pending"));
+        }, () -> Optional.of(tasks.size() + " tasks scheduled (" + wheel.size() + " coarse); " + interactive.status() + "; " + background.status()));
+    }
+
+    private static ThreadFactory threadFactory(String name, int priority) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(0);
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, name + "-" + threadNumber.getAndIncrement());
+                thread.setDaemon(false);
+                thread.setPriority(priority);
+                return thread;
+            }
+        };
+    }
+
+    private static PoolExecutor executor(Pool pool) {
+        return switch (pool) {
+            case INTERACTIVE -> interactive;
+            case BACKGROUND -> background;
+        };
     }
 
     public static ScheduledFuture<?> schedule(@NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
-        return executorService.schedule(command, delay, unit);
+        return schedule(Pool.INTERACTIVE, command, delay, unit);
     }
 
     public static <V> ScheduledFuture<V> schedule(@NotNull Callable<V> callable, long delay, @NotNull TimeUnit unit) {
-        return executorService.schedule(callable, delay, unit);
+        return schedule(Pool.INTERACTIVE, callable, delay, unit);
     }
 
     public static ScheduledFuture<?> scheduleAtFixedRate(@NotNull Runnable command, long initialDelay, long period, @NotNull TimeUnit unit) {
-        return executorService.scheduleAtFixedRate(command, initialDelay, period, unit);
+        return scheduleAtFixedRate(Pool.INTERACTIVE, command, initialDelay, period, unit);
     }
 
     public static ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Runnable command, long initialDelay, long delay, @NotNull TimeUnit unit) {
-        return executorService.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+        return scheduleWithFixedDelay(Pool.INTERACTIVE, command, initialDelay, delay, unit);
     }
 
     public static <T> Future<T> submit(@NotNull Callable<T> task) {
-        return executorService.submit(task);
+        return submit(Pool.INTERACTIVE, task);
     }
 
     public static <T> Future<T> submit(@NotNull Runnable task, T result) {
-        return executorService.submit(task, result);
+        return interactive.submit(tracked(Executors.callable(task, result), ownerStats.get(callerClass())));
     }
 
     public static Future<?> submit(@NotNull Runnable task) {
-        return executorService.submit(task);
+        return submit(Pool.INTERACTIVE, task);
+    }
+
+    public static ScheduledFuture<?> schedule(@NotNull Pool pool, @NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
+        return schedule(pool, callerClass(), command, delay, unit);
+    }
+
+    public static <V> ScheduledFuture<V> schedule(@NotNull Pool pool, @NotNull Callable<V> callable, long delay, @NotNull TimeUnit unit) {
+        return schedule(pool, callerClass(), callable, delay, unit);
+    }
+
+    /**
+     * As {@link ScheduledExecutorService#scheduleAtFixedRate}; Executions never overlap, a run that is due while the previous run is still executing starts once it completes.
+     */
+    public static ScheduledFuture<?> scheduleAtFixedRate(@NotNull Pool pool, @NotNull Runnable command, long initialDelay, long period, @NotNull TimeUnit unit) {
+        return scheduleAtFixedRate(pool, callerClass(), command, initialDelay, period, unit);
+    }
+
+    /**
+     * As {@link ScheduledExecutorService#scheduleWithFixedDelay}
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Pool pool, @NotNull Runnable command, long initialDelay, long delay, @NotNull TimeUnit unit) {
+        return scheduleWithFixedDelay(pool, callerClass(), command, initialDelay, delay, unit);
+    }
+
+    public static <T> Future<T> submit(@NotNull Pool pool, @NotNull Callable<T> task) {
+        return submit(pool, callerClass(), task);
+    }
+
+    public static Future<?> submit(@NotNull Pool pool, @NotNull Runnable task) {
+        return submit(pool, callerClass(), task);
+    }
+
+    /**
+     * @param owner Class to credit the task to in health statistics; Nested classes are credited to their top-level class
+     */
+    public static ScheduledFuture<?> schedule(@NotNull Pool pool, @NotNull Class<?> owner, @NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
+        return schedule(pool, owner, Executors.callable(command), delay, unit);
+    }
+
+    /**
+     * @param owner Class to credit the task to in health statistics; Nested classes are credited to their top-level class
+     */
+    public static <V> ScheduledFuture<V> schedule(@NotNull Pool pool, @NotNull Class<?> owner, @NotNull Callable<V> callable, long delay, @NotNull TimeUnit unit) {
+        return new ScheduledTask<>(callable, executor(pool), 0, owner).start(unit.toNanos(delay));
+    }
+
+    /**
+     * As {@link #scheduleAtFixedRate(Pool, Runnable, long, long, TimeUnit)}
+     * @param owner Class to credit the task to in health statistics; Nested classes are credited to their top-level class
+     */
+    public static ScheduledFuture<?> scheduleAtFixedRate(@NotNull Pool pool, @NotNull Class<?> owner, @NotNull Runnable command, long initialDelay, long period, @NotNull TimeUnit unit) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive");
+        return new ScheduledTask<>(Executors.callable(command), executor(pool), unit.toNanos(period), owner).start(unit.toNanos(initialDelay));
+    }
+
+    /**
+     * As {@link ScheduledExecutorService#scheduleWithFixedDelay}
+     * @param owner Class to credit the task to in health statistics; Nested classes are credited to their top-level class
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Pool pool, @NotNull Class<?> owner, @NotNull Runnable command, long initialDelay, long delay, @NotNull TimeUnit unit) {
+        if (delay <= 0) throw new IllegalArgumentException("Delay must be positive");
+        return new ScheduledTask<>(Executors.callable(command), executor(pool), -unit.toNanos(delay), owner).start(unit.toNanos(initialDelay));
+    }
+
+    /**
+     * @param owner Class to credit the task to in health statistics; Nested classes are credited to their top-level class
+     */
+    public static <T> Future<T> submit(@NotNull Pool pool, @NotNull Class<?> owner, @NotNull Callable<T> task) {
+        return executor(pool).submit(tracked(task, ownerStats.get(owner)));
+    }
+
+    /**
+     * @param owner Class to credit the task to in health statistics; Nested classes are credited to their top-level class
+     */
+    public static Future<?> submit(@NotNull Pool pool, @NotNull Class<?> owner, @NotNull Runnable task) {
+        return executor(pool).submit(tracked(Executors.callable(task), ownerStats.get(owner)));
+    }
+
+    /**
+     * Cancels all scheduled tasks owned by classes of the specified classloader; Runs in progress are not interrupted. Used when unloading plugins
+     * @return Number of cancelled tasks
+     */
+    public static int cancelAll(@NotNull ClassLoader classLoader) {
+        int cancelled = 0;
+        for (ScheduledTask<?> task : tasks) {
+            if (task.owner.getClassLoader() == classLoader && task.cancel(false)) cancelled++;
+        }
+        return cancelled;
+    }
+
+    /**
+     * @return The class that called into Scheduling; Fallback for callers that do not specify an owner, as walking the stack is comparatively slow
+     */
+    private static Class<?> callerClass() {
+        return stackWalker.walk(frames -> frames.map(StackWalker.StackFrame::getDeclaringClass)
+                                                .filter(frameClass -> frameClass.getNestHost() != Scheduling.class)
+                                                .findFirst()
+                                                .orElse(Scheduling.class));
+    }
+
+    private static <T> Callable<T> tracked(Callable<T> task, SubmitterStats stats) {
+        long submittedNanos = System.nanoTime();
+        return () -> {
+            long startNanos = System.nanoTime();
+            boolean failed = true;
+            try {
+                T value = task.call();
+                failed = false;
+                return value;
+            } finally {
+                stats.record(startNanos - submittedNanos, System.nanoTime() - startNanos, failed, false);
+            }
+        };
+    }
+
+    /**
+     * Per-submitter task statistics, reported through {@link HealthCheck}<br>
+     * Wait time is measured from when a task was due (or submitted) until it started running.<br>
+     * Counts are kept since startup, but health only reflects failures and overruns within the last {@link #HEALTH_WINDOW_NANOS}.
+     */
+    private static final class SubmitterStats {
+        private final String name;
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder runNanos = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder overruns = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxRunNanos = new LongAccumulator(Math::max, 0);
+        private volatile long lastFailureNanos;     // Only valid if failures > 0
+        private volatile long lastOverrunNanos;     // Only valid if overruns > 0
+
+        SubmitterStats(String name) {
+            this.name = name;
+            HealthCheck.addNamed(
+                    "Scheduling: " + name,
+                    () -> isRecent(failures, lastFailureNanos) || isRecent(overruns, lastOverrunNanos) ? HealthStatus.ERROR_NONCRITICAL : HealthStatus.RUNNING,
+                    this::message
+            );
+        }
+
+        private static boolean isRecent(LongAdder count, long lastNanos) {
+            return count.sum() > 0 && System.nanoTime() - lastNanos < HEALTH_WINDOW_NANOS;
+        }
+
+        void record(long waitNanos, long runNanos, boolean failed, boolean overran) {
+            runs.increment();
+            this.waitNanos.add(Math.max(0, waitNanos));
+            this.runNanos.add(runNanos);
+            maxWaitNanos.accumulate(waitNanos);
+            maxRunNanos.accumulate(runNanos);
+            if (failed) {
+                lastFailureNanos = System.nanoTime();
+                failures.increment();
+            }
+            if (overran) {
+                lastOverrunNanos = System.nanoTime();
+                overruns.increment();
+            }
+        }
+
+        private Optional<String> message() {
+            long runs = this.runs.sum();
+            if (runs == 0) return Optional.of("No tasks run");
+            return Optional.of(
+                    runs + " runs; Wait avg " + TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / runs) + "ms, max " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()) + "ms"
+                    + "; Run avg " + TimeUnit.NANOSECONDS.toMillis(runNanos.sum() / runs) + "ms, max " + TimeUnit.NANOSECONDS.toMillis(maxRunNanos.get()) + "ms"
+                    + "; " + failures.sum() + " failed, " + overruns.sum() + " overran"
+                    + (failures.sum() > 0 ? "; Last failure " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastFailureNanos) + "s ago" : "")
+                    + (overruns.sum() > 0 ? "; Last overrun " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastOverrunNanos) + "s ago" : "")
+            );
+        }
+    }
+
+    /**
+     * Thread pool that measures queue delay, and resizes itself between its bounds to keep that delay near a target
+     */
+    private static final class PoolExecutor extends ThreadPoolExecutor {
+        private final String name;
+        private final int minThreads;
+        private final int maxThreads;
+        private final long targetDelayNanos;
+        private double delayEwmaNanos = 0;  // Guarded by this
+
+        PoolExecutor(String name, int minThreads, int maxThreads, long targetDelayMillis, int priority) {
+            super(minThreads, minThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory(name, priority));
+            this.name = name;
+            this.minThreads = minThreads;
+            this.maxThreads = maxThreads;
+            this.targetDelayNanos = TimeUnit.MILLISECONDS.toNanos(targetDelayMillis);
+        }
+
+        @Override
+        public void execute(@NotNull Runnable command) {
+            long enqueuedNanos = System.nanoTime();
+            super.execute(() -> {
+                recordDelay(System.nanoTime() - enqueuedNanos);
+                command.run();
+            });
+        }
+
+        private synchronized void recordDelay(long delayNanos) {
+            delayEwmaNanos += EWMA_ALPHA * (delayNanos - delayEwmaNanos);
+        }
+
+        /**
+         * Grows the pool by one thread if queue delay is above target and work is queued, shrinks it by one thread if delay is well below target
+         */
+        void resize() {
+            double delayNanos;
+            synchronized (this) {
+                if (getQueue().isEmpty()) delayEwmaNanos *= 1 - EWMA_ALPHA;    // No samples are taken while idle; Decay towards zero
+                delayNanos = delayEwmaNanos;
+            }
+            int size = getCorePoolSize();
+            if (delayNanos > targetDelayNanos && size < maxThreads && !getQueue().isEmpty()) {
+                setMaximumPoolSize(size + 1);   // Maximum first, as core size may not exceed it
+                setCorePoolSize(size + 1);
+                logger.debug("Grew " + name + " to " + (size + 1) + " threads");
+            } else if (delayNanos < targetDelayNanos / 4.0 && size > minThreads) {
+                setCorePoolSize(size - 1);
+                setMaximumPoolSize(size - 1);
+                logger.debug("Shrunk " + name + " to " + (size - 1) + " threads");
+            }
+        }
+
+        synchronized String status() {
+            return name + ": " + getCorePoolSize() + " threads, " + getQueue().size() + " queued, " + TimeUnit.NANOSECONDS.toMillis((long) delayEwmaNanos) + "ms delay";
+        }
+    }
+
+    /**
+     * Task that is timed on the timer thread, and run on a pool<br>
+     * Like {@link ScheduledThreadPoolExecutor}, a periodic task stops at its first exception, which its future then completes with.
+     */
+    private static final class ScheduledTask<V> implements ScheduledFuture<V> {
+        private final Callable<V> task;
+        private final PoolExecutor pool;
+        private final long periodNanos;     // Positive for fixed-rate, negative for fixed-delay, zero for one-shot; As ScheduledThreadPoolExecutor
+        private final Class<?> owner;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private final AtomicBoolean isRunning = new AtomicBoolean(false);
+        private final SubmitterStats stats;
+        private volatile boolean missedRun = false;
+        private volatile long missedDueNanos;
+        private volatile long dueNanos;
+        private boolean hasOverrun = false;     // Only accessed from the running task
+        private volatile ScheduledFuture<?> timerFuture;
+        private volatile TimingWheel.Timeout timeout;  // Used instead of the timer future for coarse one-shot tasks
+        private volatile Future<?> execution;
+
+        ScheduledTask(Callable<V> task, PoolExecutor pool, long periodNanos, Class<?> owner) {
+            this.task = task;
+            this.pool = pool;
+            this.periodNanos = periodNanos;
+            this.owner = owner;
+            this.stats = ownerStats.get(owner);
+        }
+
+        synchronized ScheduledTask<V> start(long initialDelayNanos) {
+            dueNanos = System.nanoTime() + initialDelayNanos;
+            if (periodNanos == 0 && initialDelayNanos >= COARSE_TICKS * wheel.tickNanos()) {
+                if (timer.isShutdown()) throw new RejectedExecutionException("Scheduling has shut down");
+                timeout = wheel.schedule(this::onTimer, System.nanoTime() + initialDelayNanos);
+            } else if (periodNanos > 0) {
+                timerFuture = timer.scheduleAtFixedRate(this::onTimer, initialDelayNanos, periodNanos, TimeUnit.NANOSECONDS);
+            } else {
+                timerFuture = timer.schedule(this::onTimer, initialDelayNanos, TimeUnit.NANOSECONDS);
+            }
+            tasks.add(this);
+            if (result.isDone()) finish();  // Task may already have run and finished before its timer future was assigned
+            return this;
+        }
+
+        private void onTimer() {
+            dispatch(periodNanos > 0 ? System.nanoTime() : dueNanos);  // Fixed-rate tasks are due whenever the timer fires
+        }
+
+        private void dispatch(long dueNanos) {
+            if (result.isDone()) return;
+            if (!isRunning.compareAndSet(false, true)) {
+                if (!missedRun) missedDueNanos = dueNanos;
+                missedRun = true;
+                return;
+            }
+            this.dueNanos = dueNanos;
+            try {
+                execution = pool.submit(this::run);
+            } catch (RejectedExecutionException e) {
+                isRunning.set(false);
+                cancel(false);
+            }
+        }
+
+        private void run() {
+            long startNanos = System.nanoTime();
+            boolean failed = false;
+            try {
+                V value = task.call();
+                if (periodNanos == 0) result.complete(value);
+            } catch (Throwable t) {
+                failed = true;
+                result.completeExceptionally(t);
+            } finally {
+                long runNanos = System.nanoTime() - startNanos;
+                boolean overran = periodNanos > 0 && runNanos > periodNanos;
+                if (overran && !hasOverrun) {
+                    hasOverrun = true;
+                    logger.warn("Periodic task from " + stats.name + " overran its period: " + TimeUnit.NANOSECONDS.toMillis(runNanos) + "ms > " + TimeUnit.NANOSECONDS.toMillis(periodNanos) + "ms");
+                }
+                stats.record(startNanos - dueNanos, runNanos, failed, overran);
+                isRunning.set(false);
+            }
+
+            if (result.isDone()) {
+                finish();
+            } else if (periodNanos > 0) {
+                if (missedRun) {
+                    missedRun = false;
+                    dispatch(missedDueNanos);
+                }
+            } else {
+                try {
+                    synchronized (this) {
+                        dueNanos = System.nanoTime() - periodNanos;
+                        timerFuture = timer.schedule(this::onTimer, -periodNanos, TimeUnit.NANOSECONDS);
+                    }
+                } catch (RejectedExecutionException e) {
+                    cancel(false);
+                }
+            }
+        }
+
+        private void finish() {
+            tasks.remove(this);
+            var timerFuture = this.timerFuture;
+            if (timerFuture != null) timerFuture.cancel(false);
+            var timeout = this.timeout;
+            if (timeout != null) timeout.cancel();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = result.cancel(mayInterruptIfRunning);
+            var execution = this.execution;
+            if (mayInterruptIfRunning && execution != null) execution.cancel(true);
+            finish();
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(@NotNull TimeUnit unit) {
+            var timeout = this.timeout;
+            if (timeout != null) {
+                return unit.convert(timeout.deadlineNanos() - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } else {
+                return timerFuture.getDelay(unit);
+            }
+        }
+
+        @Override
+        public int compareTo(@NotNull Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return result.get();
+        }
+
+        @Override
+        public V get(long timeout, @NotNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return result.get(timeout, unit);
+        }
     }
 }
@@ -42,6 +42,31 @@ public class Shutdown implements StaticLoaded {
         }
     }
 
+    /**
+     * Removes a previously registered hook, for components that release their resources before shutdown
+     * @param hook Hook to remove, as passed to {@link #registerHook(Runnable)}
+     */
+    public static synchronized void removeHook(Runnable hook) {
+        hooks.remove(hook);
+    }
+
+    /**
+     * Runs and removes all hooks defined by classes of the specified classloader, newest first; Used when unloading plugins
+     * @param classLoader Classloader of the hooks
+     */
+    public static synchronized void runHooks(ClassLoader classLoader) {
+        for (int i = hooks.size() - 1; i >= 0; i--) {
+            var hook = hooks.get(i);
+            if (hook.getClass().getClassLoader() != classLoader) continue;
+            hooks.remove(i);
+            try {
+                hook.run();
+            } catch (Throwable t) {
+                logger.error("Exception during shutdown hook!", t);
+            }
+        }
+    }
+
     /**
      * Initiates shutdown
      * If hard shutdowns are disabled, will only call shutdown hooks. Application will remain alive if a non-daemon thread does not exit after shutdown hooks are called.
@@ -55,6 +80,11 @@ public class Shutdown implements StaticLoaded {
         if (isShutdown) return;
         logger.info("Shutdown requested");
         System.out.println("Shutdown requested");
+        try {
+            Core.enterPhase(Core.Phase.SHUTTING_DOWN);
+        } catch (Throwable t) {     // Core may have failed to initialise; Shutdown hooks must still run
+            logger.error("Could not enter shutdown phase", t);
+        }
         for (int i = hooks.size() - 1; i >= 0; i--) {
             try {
                 hooks.get(i).run();
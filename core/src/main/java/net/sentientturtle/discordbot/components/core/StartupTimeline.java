@@ -0,0 +1,138 @@
+package net.sentientturtle.discordbot.components.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the duration of startup phases<br>
+ * On {@link #finish()}, the timeline is logged as a table sorted by duration, and appended to a CSV file for comparison between runs.<br>
+ * Phases may nest; Durations are inclusive of nested phases.<br>
+ * Deliberately not {@link net.sentientturtle.discordbot.loader.StaticLoaded}, as it must be usable before and during static loading.
+ */
+public class StartupTimeline {
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimeline.class);
+    private static final long originNanos = System.nanoTime();
+    private static final Instant originInstant = Instant.now();
+    private static final List<Entry> entries = new ArrayList<>();
+    private static final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+    private static volatile boolean isFinished = false;
+
+    private record Entry(String phase, String thread, int depth, long startNanos, long durationNanos) {}
+
+    /**
+     * Handle for a running phase, ends the phase when closed.
+     */
+    public static final class Phase implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private final int depth;
+        private boolean isClosed = false;
+
+        private Phase(String name, long startNanos, int depth) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.depth = depth;
+        }
+
+        @Override
+        public void close() {
+            if (isClosed) return;
+            isClosed = true;
+            StartupTimeline.depth.get()[0]--;
+            record(name, depth, startNanos, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Starts a phase, use with try-with-resources
+     * @param phase Name of the phase
+     * @return Handle which ends the phase when closed
+     */
+    public static Phase begin(@NotNull String phase) {
+        int[] currentDepth = depth.get();
+        return new Phase(phase, System.nanoTime(), currentDepth[0]++);
+    }
+
+    private static void record(String phase, int depth, long startNanos, long durationNanos) {
+        if (isFinished) return;     // Phases may also run after startup, e.g. lazy persistence loads; These are not part of the timeline.
+        synchronized (entries) {
+            entries.add(new Entry(phase, Thread.currentThread().getName(), depth, startNanos - originNanos, durationNanos));
+        }
+    }
+
+    /**
+     * Ends the timeline, logs it, and appends it to the timeline file.<br>
+     * Only acts once.
+     */
+    public static void finish() {
+        if (isFinished) return;
+        long totalNanos = System.nanoTime() - originNanos;
+        List<Entry> timeline;
+        synchronized (entries) {
+            isFinished = true;
+            timeline = new ArrayList<>(entries);
+        }
+        timeline.sort(Comparator.comparingLong(Entry::durationNanos).reversed());
+
+        var table = new StringBuilder("Startup timeline (total ").append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append("ms):\n");
+        table.append(String.format("%10s %10s  %s%n", "duration", "start", "phase"));
+        for (Entry entry : timeline) {
+            table.append(String.format(
+                    "%8dms %8dms  %s%s%n",
+                    TimeUnit.NANOSECONDS.toMillis(entry.durationNanos),
+                    TimeUnit.NANOSECONDS.toMillis(entry.startNanos),
+                    "  ".repeat(entry.depth),
+                    entry.phase
+            ));
+        }
+        logger.info(table.toString());
+
+        writeFile(timeline, totalNanos);
+    }
+
+    private static void writeFile(List<Entry> timeline, long totalNanos) {
+        String timelinePath = System.getProperty("net.sentientturtle.discordbot.startuptimeline");
+        if (timelinePath == null) {
+            String dataFolderPath = System.getProperty("net.sentientturtle.discordbot.datafolderpath", "./data");
+            timelinePath = dataFolderPath + "/startup_timeline.csv";
+        }
+        var path = Path.of(timelinePath);
+        boolean isNewFile = !Files.exists(path);
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (isNewFile) writer.write("run,phase,thread,depth,start_ms,duration_ms\n");
+            String run = originInstant.toString();
+            writer.write(run + ",total,,0,0.000," + millis(totalNanos) + "\n");
+            for (Entry entry : timeline) {
+                writer.write(run + "," + csv(entry.phase) + "," + csv(entry.thread) + "," + entry.depth + "," + millis(entry.startNanos) + "," + millis(entry.durationNanos) + "\n");
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write startup timeline to " + path, e);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        } else {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package net.sentientturtle.discordbot.components.core;
+
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.sentientturtle.discordbot.components.module.ModuleManager;
+import net.sentientturtle.discordbot.components.module.command.UnifiedCommand;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional JIT warm-up phase, run by {@link Core} after modules have loaded and before the bot is marked as initialised<br>
+ * Repeatedly runs registered warm-up hooks and synthetic core dispatch (command lookup and permission checks against stub members), until JIT compilation settles.<br>
+ * Hooks must be free of side effects; They may run many thousands of times.
+ */
+public class WarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+    private static final int ROUNDS_PER_BATCH = 500;
+    private static final int SETTLED_BATCHES = 3;   // Compilation is considered settled after this many batches without any compilation activity
+    private static final Map<String, Runnable> hooks = new LinkedHashMap<>();
+
+    /**
+     * Registers a warm-up hook<br>
+     * Hooks should exercise hot paths without side effects, and should not depend on module instances, which may not be loaded.
+     * @param name Name of the hook, for logging
+     * @param hook Hook to run
+     */
+    public static synchronized void registerHook(@NotNull String name, @NotNull Runnable hook) {
+        hooks.put(name, hook);
+    }
+
+    /**
+     * Runs the warm-up until compilation settles, or until the maximum duration has passed
+     * @param maxDuration Maximum duration of the warm-up
+     */
+    static void run(@NotNull Duration maxDuration) {
+        // Modules register their hooks from static initializers; Initialise enabled module classes without constructing instances, which may be lazily loaded
+        ModuleManager.modules.forEach((name, moduleClass) -> {
+            if (ModuleManager.moduleStatus(name) == ModuleManager.ModuleStatus.ENABLED) {
+                try {
+                    Class.forName(moduleClass.getName(), true, moduleClass.getClassLoader());
+                } catch (ClassNotFoundException | LinkageError e) {
+                    logger.warn("Could not initialise module class for warm-up: " + moduleClass.getName(), e);
+                }
+            }
+        });
+
+        Map<String, Runnable> activeHooks;
+        synchronized (WarmUp.class) {
+            activeHooks = new LinkedHashMap<>(hooks);
+        }
+        activeHooks.put("Command dispatch", dispatchHook());
+
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean canMonitor = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        if (!canMonitor) logger.info("JIT compilation time cannot be monitored; Warming up for the maximum duration");
+
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        long lastCompilationTime = canMonitor ? compiler.getTotalCompilationTime() : 0;
+        int settledBatches = 0;
+        int batches = 0;
+        while (System.nanoTime() < deadline && settledBatches < SETTLED_BATCHES && !activeHooks.isEmpty()) {
+            for (int i = 0; i < ROUNDS_PER_BATCH; i++) {
+                var iterator = activeHooks.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    var hook = iterator.next();
+                    try {
+                        hook.getValue().run();
+                    } catch (Throwable t) {
+                        logger.warn("Warm-up hook [" + hook.getKey() + "] failed; Removing from warm-up", t);
+                        iterator.remove();
+                    }
+                }
+            }
+            batches++;
+            try {
+                Thread.sleep(50);   // Compilation happens in the background; Give queued compilations time to complete before measuring
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (canMonitor) {
+                long compilationTime = compiler.getTotalCompilationTime();
+                settledBatches = compilationTime == lastCompilationTime ? settledBatches + 1 : 0;
+                lastCompilationTime = compilationTime;
+            }
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (settledBatches >= SETTLED_BATCHES) {
+            logger.info("Warm-up settled after " + batches + " batches (" + elapsedMillis + "ms); Hooks: " + activeHooks.keySet());
+        } else {
+            logger.info("Warm-up stopped after " + batches + " batches (" + elapsedMillis + "ms) without settling; Hooks: " + activeHooks.keySet());
+        }
+    }
+
+    /**
+     * Command lookup and permission checks for every registered command, against stub members with and without roles.<br>
+     * Command calls themselves are not exercised, as commands have side effects.
+     */
+    private static Runnable dispatchHook() {
+        List<UnifiedCommand> commands = new ArrayList<>(ModuleManager.getCommandMap().values());
+        Member[] members = {
+                stubMember(1L),
+                stubMember(2L, 10L),
+                stubMember(3L, 10L, 11L, 12L, 13L)
+        };
+        return () -> {
+            var commandMap = ModuleManager.getCommandMap();
+            for (UnifiedCommand command : commands) {
+                var found = commandMap.get(command.path());
+                if (found != null) {
+                    for (Member member : members) {
+                        found.commandUserPermission().memberHasPermission(member);
+                    }
+                }
+            }
+        };
+    }
+
+    private static Member stubMember(long id, long... roleIDs) {
+        List<Role> roles = new ArrayList<>(roleIDs.length);
+        for (long roleID : roleIDs) {
+            roles.add(stub(Role.class, roleID, List.of()));
+        }
+        return stub(Member.class, id, List.copyOf(roles));
+    }
+
+    /**
+     * Stub entity with only its ID and roles; All other methods return default values
+     */
+    private static <T> T stub(Class<T> entityClass, long id, List<Role> roles) {
+        return entityClass.cast(Proxy.newProxyInstance(
+                entityClass.getClassLoader(),
+                new Class<?>[]{entityClass},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getIdLong" -> id;
+                    case "getId" -> Long.toUnsignedString(id);
+                    case "getRoles" -> roles;
+                    case "hashCode" -> Long.hashCode(id);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "WarmUpStub:" + entityClass.getSimpleName() + ":" + id;
+                    default -> {
+                        Class<?> type = method.getReturnType();
+                        if (type == boolean.class) yield false;
+                        if (type == long.class) yield 0L;
+                        if (type == int.class) yield 0;
+                        if (type == double.class) yield 0.0d;
+                        if (type == float.class) yield 0.0f;
+                        if (type == short.class) yield (short) 0;
+                        if (type == byte.class) yield (byte) 0;
+                        if (type == char.class) yield '\0';
+                        yield null;
+                    }
+                }
+        ));
+    }
+}
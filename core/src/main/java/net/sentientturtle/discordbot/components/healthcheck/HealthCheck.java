@@ -3,8 +3,10 @@ package net.sentientturtle.discordbot.components.healthcheck;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -13,8 +15,9 @@ import java.util.stream.Stream;
  * Bot health subsystem; Enables classes/objects to register a health-check function
  */
 public class HealthCheck implements StaticLoaded {
-    private static final HashMap<Class<?>, HealthUpdateSupplier> static_map = new HashMap<>();
-    private static final HashMap<Object, HealthUpdateSupplier> instance_map = new HashMap<>();
+    private static final ConcurrentHashMap<Class<?>, HealthUpdateSupplier> static_map = new ConcurrentHashMap<>();   // Concurrent, as instances may be added or removed at runtime as modules are loaded and unloaded
+    private static final ConcurrentHashMap<Object, HealthUpdateSupplier> instance_map = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, HealthUpdateSupplier> named_map = new ConcurrentHashMap<>();
 
     public static void addStatic(Class<?> clazz, Supplier<HealthStatus> statusSupplier) {
         addStatic(clazz, statusSupplier, Optional::empty);
@@ -32,15 +35,40 @@ public class HealthCheck implements StaticLoaded {
         instance_map.put(object, new HealthUpdateSupplier(statusSupplier, statusMessageSupplier));
     }
 
+    public static void removeInstance(Object object) {
+        instance_map.remove(object);
+    }
+
+    /**
+     * Adds a health-check under an explicit name, for entries that do not correspond to a single class or object
+     */
+    public static void addNamed(String name, Supplier<HealthStatus> statusSupplier, Supplier<Optional<String>> statusMessageSupplier) {
+        named_map.put(name, new HealthUpdateSupplier(statusSupplier, statusMessageSupplier));
+    }
+
+    public static void removeNamed(String name) {
+        named_map.remove(name);
+    }
+
+    /**
+     * Removes all health-checks registered by or for classes of the specified classloader; Used when unloading plugins
+     */
+    public static void removeAll(ClassLoader classLoader) {
+        static_map.keySet().removeIf(clazz -> clazz.getClassLoader() == classLoader);
+        instance_map.keySet().removeIf(object -> object.getClass().getClassLoader() == classLoader);
+        named_map.values().removeIf(supplier -> supplier.statusSupplier.getClass().getClassLoader() == classLoader);
+    }
+
     /**
      * Helper record
      */
     private record NamedHealthUpdateSupplier(String name, HealthUpdateSupplier supplier) {}
     public static Collection<String> getMessages() {
-        return Stream.concat(
+        return Stream.of(
                         static_map.entrySet().stream().map(entry -> new NamedHealthUpdateSupplier(entry.getKey().getSimpleName(), entry.getValue())),
-                        instance_map.entrySet().stream().map(entry -> new NamedHealthUpdateSupplier(entry.getKey().getClass().getSimpleName(), entry.getValue()))
-                ).map(namedHealthUpdate -> {
+                        instance_map.entrySet().stream().map(entry -> new NamedHealthUpdateSupplier(entry.getKey().getClass().getSimpleName(), entry.getValue())),
+                        named_map.entrySet().stream().sorted(Map.Entry.comparingByKey()).map(entry -> new NamedHealthUpdateSupplier(entry.getKey(), entry.getValue()))
+                ).flatMap(Function.identity()).map(namedHealthUpdate -> {
                     assert namedHealthUpdate.name != null && namedHealthUpdate.supplier != null;
                     var icon = namedHealthUpdate.supplier.statusSupplier.get().asIcon();
                     var message = namedHealthUpdate.supplier.statusMessageSupplier.get();
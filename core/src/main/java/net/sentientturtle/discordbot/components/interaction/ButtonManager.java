@@ -4,7 +4,6 @@ import net.dv8tion.jda.api.entities.Emoji;
 import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
 import net.dv8tion.jda.api.interactions.components.Button;
 import net.dv8tion.jda.api.interactions.components.ButtonStyle;
-import net.sentientturtle.discordbot.components.core.Scheduling;
 import net.sentientturtle.discordbot.components.permission.BotPermission;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
 import org.jetbrains.annotations.NotNull;
@@ -12,36 +11,50 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 /**
  * Manager for Discord Buttons<br>
  * Convenience class to automatically bind button events to callbacks<br>
- *  * Also eventhandler for button events
+ * Also eventhandler for button events<br>
+ * Handlers expire after {@link ComponentRegistry#DEFAULT_TTL_MILLIS}, or once their stale check returns true when the button is clicked
  */
 public class ButtonManager implements StaticLoaded {
     private static final Logger logger = LoggerFactory.getLogger(ButtonManager.class);
-    private static final AtomicLong buttonID = new AtomicLong(System.currentTimeMillis());     // Initialise using calendar time; This provides a best-effort attempt to ensure buttonIDs are not reused even if the program is restarted.
-
-    private static final ConcurrentHashMap<String, ClickHandler> clickHandlers = new ConcurrentHashMap<>();   // This could be optimized by using array-backed storage as buttonIDs are sequential.
+    private static final ComponentRegistry<ClickHandler> clickHandlers = new ComponentRegistry<>("Button");
 
     private record ClickHandler(Consumer<ButtonClickEvent> eventHandler, BooleanSupplier isStale, BotPermission clickPermission) {}
 
-    static {
-        // TODO: Replace this hack with a better way of avoiding memory leaks (Endless accumulation of handlers)
-        Scheduling.scheduleAtFixedRate(() -> clickHandlers.values().removeIf(clickHandler -> clickHandler.isStale.getAsBoolean()), 10, 10, TimeUnit.MINUTES);
+    /**
+     * Removes all handlers defined by classes of the specified classloader; Used when unloading plugins
+     * @param classLoader Classloader of the handlers to remove
+     */
+    public static void removeHandlers(@NotNull ClassLoader classLoader) {
+        clickHandlers.removeIf(clickHandler -> clickHandler.eventHandler.getClass().getClassLoader() == classLoader);
+    }
+
+    /**
+     * Removes the handler of a button, e.g. once the message it is attached to is deleted
+     * @param buttonID ID of the button
+     * @return True if a handler was removed
+     */
+    public static boolean removeHandler(@NotNull String buttonID) {
+        return clickHandlers.remove(buttonID);
     }
 
     public static void handleEvent(ButtonClickEvent buttonClickEvent) {
         var button = buttonClickEvent.getButton();
         if (button != null) {
             var id = button.getId();
-            if (id != null) {
+            if (id != null && StatelessComponents.isStateless(id)) {
+                StatelessComponents.handleButton(buttonClickEvent, id);
+            } else if (id != null) {
                 ClickHandler onClick = clickHandlers.get(id);
+                if (onClick != null && onClick.isStale.getAsBoolean()) {
+                    clickHandlers.remove(id);
+                    onClick = null;
+                }
                 if (
                         onClick != null &&
                         buttonClickEvent.getMember() != null &&
@@ -61,10 +74,8 @@ public class ButtonManager implements StaticLoaded {
     }
 
     private static Button newButton(@NotNull ButtonStyle style, @Nullable String label, @Nullable Emoji emoji, @NotNull Consumer<ButtonClickEvent> onClick, @NotNull BooleanSupplier staleCheck, @NotNull BotPermission clickPermission) {
-        var id = "Button-" + buttonID.getAndIncrement();
-        var button = Button.of(style, id, label, emoji);
-        clickHandlers.put(id, new ClickHandler(onClick, staleCheck, clickPermission));
-        return button;
+        var id = clickHandlers.register(new ClickHandler(onClick, staleCheck, clickPermission), ComponentRegistry.DEFAULT_TTL_MILLIS);
+        return Button.of(style, id, label, emoji);
     }
 
     public static Button newLink(@NotNull String label, @NotNull String url) {
@@ -0,0 +1,142 @@
+package net.sentientturtle.discordbot.components.interaction;
+
+import net.sentientturtle.discordbot.components.core.Scheduling;
+import net.sentientturtle.util.ConcurrentLongMap;
+import net.sentientturtle.util.TimingWheel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Registry of handlers for message components, shared by {@link ButtonManager} and {@link SelectionMenuManager}<br>
+ * Component IDs are of the form "prefix-number", with sequential numbers; Handlers are keyed by the parsed number in a {@link ConcurrentLongMap}.<br>
+ * Every handler expires after a time-to-live; Deadlines are kept on a {@link TimingWheel}, so expiry only touches handlers that are due instead of scanning all of them.
+ */
+final class ComponentRegistry<H> {
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final long EXPIRY_TICK_MINUTES = 1;
+
+    private final String prefix;
+    private final AtomicLong nextID = new AtomicLong(System.currentTimeMillis());  // Initialise using calendar time; This provides a best-effort attempt to ensure IDs are not reused even if the program is restarted.
+    private final ConcurrentLongMap<Entry<H>> handlers = new ConcurrentLongMap<>();
+    private final TimingWheel deadlines = new TimingWheel(EXPIRY_TICK_MINUTES, TimeUnit.MINUTES, System.nanoTime());
+
+    private static final class Entry<H> {
+        private final H handler;
+        private final long deadlineNanos;
+        private TimingWheel.Timeout timeout;    // Set before the entry is published
+
+        private Entry(H handler, long deadlineNanos) {
+            this.handler = handler;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    /**
+     * @param prefix Prefix of component IDs, without the trailing '-'
+     */
+    ComponentRegistry(@NotNull String prefix) {
+        this.prefix = prefix + "-";
+        Scheduling.scheduleAtFixedRate(Scheduling.Pool.BACKGROUND, ComponentRegistry.class, () -> deadlines.advance(System.nanoTime(), Runnable::run), EXPIRY_TICK_MINUTES, EXPIRY_TICK_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Registers a handler under a new component ID
+     * @return The new component ID
+     */
+    String register(@NotNull H handler, long ttlMillis) {
+        long id = nextID.getAndIncrement();
+        put(id, handler, ttlMillis);
+        return prefix + id;
+    }
+
+    /**
+     * Registers a handler under an existing component ID, replacing any previous handler
+     * @throws IllegalArgumentException If the ID was not issued by this registry
+     */
+    void bind(@NotNull String componentID, @NotNull H handler, long ttlMillis) {
+        long id = parse(componentID);
+        if (id < 0) throw new IllegalArgumentException("Invalid component ID: " + componentID);
+        nextID.accumulateAndGet(id + 1, Math::max);     // IDs from before a restart may be ahead of the counter
+        put(id, handler, ttlMillis);
+    }
+
+    /**
+     * @return Handler for the component ID, or null if there is none or it has expired
+     */
+    @Nullable H get(@NotNull String componentID) {
+        long id = parse(componentID);
+        if (id < 0) return null;
+        var entry = handlers.get(id);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.deadlineNanos >= 0) {   // Expired, but its timer has not fired yet
+            remove(id, entry);
+            return null;
+        }
+        return entry.handler;
+    }
+
+    /**
+     * @return True if a handler was removed
+     */
+    boolean remove(@NotNull String componentID) {
+        long id = parse(componentID);
+        if (id < 0) return false;
+        var entry = handlers.remove(id);
+        if (entry == null) return false;
+        entry.timeout.cancel();
+        return true;
+    }
+
+    /**
+     * Removes all handlers that match the predicate; Scans every handler, so only intended for rare bulk removal such as plugin unloading
+     */
+    void removeIf(@NotNull Predicate<H> predicate) {
+        handlers.removeIf(entry -> {
+            if (predicate.test(entry.handler)) {
+                entry.timeout.cancel();
+                return true;
+            } else {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return Number of registered handlers
+     */
+    int size() {
+        return handlers.size();
+    }
+
+    private void put(long id, H handler, long ttlMillis) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        var entry = new Entry<>(handler, deadlineNanos);
+        entry.timeout = deadlines.schedule(() -> handlers.remove(id, entry), deadlineNanos);
+        var previous = handlers.put(id, entry);
+        if (previous != null) previous.timeout.cancel();
+    }
+
+    private void remove(long id, Entry<H> entry) {
+        if (handlers.remove(id, entry)) entry.timeout.cancel();
+    }
+
+    /**
+     * @return The numeric part of the component ID, or -1 if it was not issued by this registry
+     */
+    private long parse(String componentID) {
+        if (!componentID.startsWith(prefix)) return -1;
+        int length = componentID.length() - prefix.length();
+        if (length < 1 || length > 18) return -1;      // 18 digits can not overflow a long
+        long id = 0;
+        for (int i = prefix.length(); i < componentID.length(); i++) {
+            char c = componentID.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
@@ -2,41 +2,55 @@ package net.sentientturtle.discordbot.components.interaction;
 
 import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
 import net.dv8tion.jda.api.interactions.components.selections.SelectionMenu;
-import net.sentientturtle.discordbot.components.core.Scheduling;
 import net.sentientturtle.discordbot.components.permission.BotPermission;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 /**
  * Manager for Discord selection menus<br>
  * Convenience class to automatically bind selection events to callbacks<br>
- * Also eventhandler for selection events
+ * Also eventhandler for selection events<br>
+ * Handlers expire after their time-to-live, {@link ComponentRegistry#DEFAULT_TTL_MILLIS} unless specified, or once their stale check returns true when the menu is used
  */
 public class SelectionMenuManager implements StaticLoaded {
     private static final Logger logger = LoggerFactory.getLogger(SelectionMenuManager.class);
-    private static final AtomicLong selectID = new AtomicLong(System.currentTimeMillis());     // Initialise using calendar time; This provides a best-effort attempt to ensure buttonIDs are not reused even if the program is restarted.
-
-    private static final ConcurrentHashMap<String, SelectHandler> selectHandlers = new ConcurrentHashMap<>();
+    private static final ComponentRegistry<SelectHandler> selectHandlers = new ComponentRegistry<>("Select");
     private record SelectHandler(Consumer<SelectionMenuEvent> eventHandler, BooleanSupplier isStale, BotPermission selectPermission){}
 
-    static {
-        // TODO: Replace this hack with a better way of avoiding memory leaks (Endless accumulation of handlers)
-        Scheduling.scheduleAtFixedRate(() -> selectHandlers.values().removeIf(selectHandler -> selectHandler.isStale.getAsBoolean()), 10,10, TimeUnit.MINUTES);
+    /**
+     * Removes all handlers defined by classes of the specified classloader; Used when unloading plugins
+     * @param classLoader Classloader of the handlers to remove
+     */
+    public static void removeHandlers(ClassLoader classLoader) {
+        selectHandlers.removeIf(selectHandler -> selectHandler.eventHandler.getClass().getClassLoader() == classLoader);
+    }
+
+    /**
+     * Removes the handler of a selection menu, e.g. once the message it is attached to is deleted
+     * @param id ID of the selection menu
+     * @return True if a handler was removed
+     */
+    public static boolean removeHandler(String id) {
+        return selectHandlers.remove(id);
     }
 
     public static void handleEvent(SelectionMenuEvent selectionMenuEvent) {
         var selectionMenu = selectionMenuEvent.getComponent();
         if (selectionMenu != null) {
             var id = selectionMenu.getId();
-            if (id != null) {
+            if (id != null && StatelessComponents.isStateless(id)) {
+                StatelessComponents.handleSelect(selectionMenuEvent, id);
+            } else if (id != null) {
                 SelectionMenuManager.SelectHandler onSelect = selectHandlers.get(id);
+                if (onSelect != null && onSelect.isStale.getAsBoolean()) {
+                    selectHandlers.remove(id);
+                    onSelect = null;
+                }
                 if (
                         onSelect != null &&
                         selectionMenuEvent.getMember() != null &&
@@ -60,19 +74,35 @@ public class SelectionMenuManager implements StaticLoaded {
     }
 
     public static SelectionMenu newSelect(String placeholder, Consumer<SelectionMenuEvent> eventHandler, BooleanSupplier isStale, int minimumSelectedOptions, int maximumSelectedOptions, BotPermission selectPermission, String... options) {
-        var id = "Select-" + selectID.getAndIncrement();
+        return newSelect(placeholder, eventHandler, isStale, minimumSelectedOptions, maximumSelectedOptions, selectPermission, ComponentRegistry.DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS, options);
+    }
 
+    /**
+     * @param ttl Time after which the handler expires; For menus that must outlive the default of {@link ComponentRegistry#DEFAULT_TTL_MILLIS}
+     */
+    public static SelectionMenu newSelect(String placeholder, Consumer<SelectionMenuEvent> eventHandler, BooleanSupplier isStale, int minimumSelectedOptions, int maximumSelectedOptions, BotPermission selectPermission, long ttl, TimeUnit ttlUnit, String... options) {
         if (options.length < 1) throw new IllegalArgumentException("Too few options!");
         if (options.length > 25) throw new IllegalArgumentException("Too many options!");
-        var builder = SelectionMenu.create(id);
-        builder.setPlaceholder(placeholder);
         for (int i = 0; i < options.length; i++) {
             if (options[i].length() > 25) throw new IllegalArgumentException("Option #" + i + " too long! (Length must be <= 25)");
+        }
+        var handler = new SelectHandler(eventHandler, isStale, selectPermission);
+        var builder = SelectionMenu.create(selectHandlers.register(handler, ttlUnit.toMillis(ttl)));     // Registered after validation, so invalid menus do not leave a handler behind
+        builder.setPlaceholder(placeholder);
+        for (int i = 0; i < options.length; i++) {
             builder.addOption(options[i], String.valueOf(i));
         }
         builder.setRequiredRange(Math.max(1, minimumSelectedOptions), Math.min(options.length, maximumSelectedOptions));
-        var selectMenu = builder.build();
-        selectHandlers.put(id, new SelectHandler(eventHandler, isStale, selectPermission));
-        return selectMenu;
+        return builder.build();
+    }
+
+    /**
+     * Binds a handler to an existing selection menu, e.g. to restore the handler of a menu sent before a restart
+     * @param id ID of the selection menu
+     * @param ttl Time after which the handler expires
+     * @throws IllegalArgumentException If the ID is not a selection menu ID issued by this manager
+     */
+    public static void bindSelect(String id, Consumer<SelectionMenuEvent> eventHandler, BooleanSupplier isStale, BotPermission selectPermission, long ttl, TimeUnit ttlUnit) {
+        selectHandlers.bind(id, new SelectHandler(eventHandler, isStale, selectPermission), ttlUnit.toMillis(ttl));
     }
 }
@@ -0,0 +1,194 @@
+package net.sentientturtle.discordbot.components.interaction;
+
+import net.dv8tion.jda.api.entities.Emoji;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
+import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
+import net.dv8tion.jda.api.interactions.components.Button;
+import net.dv8tion.jda.api.interactions.components.ButtonStyle;
+import net.dv8tion.jda.api.interactions.components.selections.SelectionMenu;
+import net.sentientturtle.discordbot.components.permission.BotPermission;
+import net.sentientturtle.discordbot.components.persistence.Persistence;
+import net.sentientturtle.discordbot.components.persistence.PersistentObject;
+import net.sentientturtle.discordbot.loader.StaticLoaded;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Components without per-message server-side state<br>
+ * A stateless component's ID carries the key of a handler registered at startup, and a short state string, signed with a persisted secret; e.g. "S:vote:12:signature".<br>
+ * Clicks are routed by key, so memory use does not grow with the number of messages sent, and components keep working after a restart as long as their handler is registered again.<br>
+ * State is signed, not encrypted; It is visible to users, but can not be forged.
+ */
+public class StatelessComponents implements StaticLoaded {
+    private static final Logger logger = LoggerFactory.getLogger(StatelessComponents.class);
+    private static final String PREFIX = "S:";
+    private static final int MAX_ID_LENGTH = 100;           // Discord's limit on component IDs
+    private static final int SIGNATURE_BYTES = 12;          // Truncated HMAC-SHA256; 96 bits, 16 characters in base64
+    private static final Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder base64Decoder = Base64.getUrlDecoder();
+
+    private static final ConcurrentHashMap<String, Handler<ButtonClickEvent>> buttonHandlers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Handler<SelectionMenuEvent>> selectHandlers = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Mac> mac;
+
+    private record Handler<E>(BiConsumer<E, String> eventHandler, BotPermission permission) {}
+
+    static {
+        var settings = Persistence.loadObject(StatelessComponentSettings.class, StatelessComponentSettings::new);
+        var key = new SecretKeySpec(base64Decoder.decode(settings.signingSecret), "HmacSHA256");
+        mac = ThreadLocal.withInitial(() -> {
+            try {
+                var instance = Mac.getInstance("HmacSHA256");
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 unavailable", e);     // Required to be present on every Java platform
+            }
+        });
+        logger.info("Module initialised!");
+    }
+
+    /**
+     * Registers the handler for stateless buttons with the specified key, replacing any previous handler
+     * @param key Handler key; Letters, digits, '.' and '_' only
+     * @param eventHandler Handler, receiving the click event and the button's state
+     */
+    public static void registerButton(@NotNull String key, @NotNull BiConsumer<ButtonClickEvent, String> eventHandler, @NotNull BotPermission clickPermission) {
+        checkKey(key);
+        buttonHandlers.put(key, new Handler<>(eventHandler, clickPermission));
+    }
+
+    /**
+     * Registers the handler for stateless selection menus with the specified key, replacing any previous handler
+     * @param key Handler key; Letters, digits, '.' and '_' only
+     * @param eventHandler Handler, receiving the selection event and the menu's state
+     */
+    public static void registerSelect(@NotNull String key, @NotNull BiConsumer<SelectionMenuEvent, String> eventHandler, @NotNull BotPermission selectPermission) {
+        checkKey(key);
+        selectHandlers.put(key, new Handler<>(eventHandler, selectPermission));
+    }
+
+    /**
+     * Removes all handlers defined by classes of the specified classloader; Used when unloading plugins
+     * @param classLoader Classloader of the handlers to remove
+     */
+    public static void removeHandlers(@NotNull ClassLoader classLoader) {
+        buttonHandlers.values().removeIf(handler -> handler.eventHandler.getClass().getClassLoader() == classLoader);
+        selectHandlers.values().removeIf(handler -> handler.eventHandler.getClass().getClassLoader() == classLoader);
+    }
+
+    /**
+     * Creates a signed component ID, for use with buttons or selection menus
+     * @param key Key of the handler for the component
+     * @param state State to pass to the handler; Must fit within Discord's 100 character ID limit along with the key and signature
+     * @throws IllegalArgumentException If the key is invalid, or the ID would be too long
+     */
+    public static String componentID(@NotNull String key, @NotNull String state) {
+        checkKey(key);
+        String payload = key + ":" + state;
+        String id = PREFIX + payload + ":" + base64.encodeToString(sign(payload));
+        if (id.length() > MAX_ID_LENGTH) throw new IllegalArgumentException("State too long for component ID: " + state);
+        return id;
+    }
+
+    /**
+     * Creates a stateless button; See {@link #registerButton(String, BiConsumer, BotPermission)}
+     */
+    public static Button newButton(@NotNull ButtonStyle style, @Nullable String label, @Nullable Emoji emoji, @NotNull String key, @NotNull String state) {
+        return Button.of(style, componentID(key, state), label, emoji);
+    }
+
+    /**
+     * Creates a stateless selection menu, with option values being option indices; See {@link #registerSelect(String, BiConsumer, BotPermission)}
+     */
+    public static SelectionMenu newSelect(@NotNull String placeholder, @NotNull String key, @NotNull String state, int minimumSelectedOptions, int maximumSelectedOptions, @NotNull String... options) {
+        if (options.length < 1) throw new IllegalArgumentException("Too few options!");
+        if (options.length > 25) throw new IllegalArgumentException("Too many options!");
+        var builder = SelectionMenu.create(componentID(key, state));
+        builder.setPlaceholder(placeholder);
+        for (int i = 0; i < options.length; i++) {
+            if (options[i].length() > 25) throw new IllegalArgumentException("Option #" + i + " too long! (Length must be <= 25)");
+            builder.addOption(options[i], String.valueOf(i));
+        }
+        builder.setRequiredRange(Math.max(1, minimumSelectedOptions), Math.min(options.length, maximumSelectedOptions));
+        return builder.build();
+    }
+
+    /**
+     * @return True if the component ID belongs to a stateless component
+     */
+    public static boolean isStateless(@NotNull String componentID) {
+        return componentID.startsWith(PREFIX);
+    }
+
+    static void handleButton(@NotNull ButtonClickEvent event, @NotNull String componentID) {
+        dispatch(buttonHandlers, event, event.getMember(), componentID);
+    }
+
+    static void handleSelect(@NotNull SelectionMenuEvent event, @NotNull String componentID) {
+        dispatch(selectHandlers, event, event.getMember(), componentID);
+    }
+
+    private static <E> void dispatch(ConcurrentHashMap<String, Handler<E>> handlers, E event, @Nullable Member member, String componentID) {
+        int keyEnd = componentID.indexOf(':', PREFIX.length());
+        int signatureStart = componentID.lastIndexOf(':');
+        if (keyEnd < 0 || signatureStart <= keyEnd) return;
+        String payload = componentID.substring(PREFIX.length(), signatureStart);
+        byte[] signature;
+        try {
+            signature = base64Decoder.decode(componentID.substring(signatureStart + 1));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (!MessageDigest.isEqual(signature, sign(payload))) {
+            logger.warn("Ignoring component with invalid signature: " + componentID);
+            return;
+        }
+
+        var handler = handlers.get(componentID.substring(PREFIX.length(), keyEnd));
+        if (handler != null && member != null && handler.permission.memberHasPermission(member)) {
+            try {
+                handler.eventHandler.accept(event, componentID.substring(keyEnd + 1, signatureStart));
+            } catch (Throwable t) {
+                logger.warn("Exception in stateless component handler: " + handler.eventHandler, t);
+            }
+        }
+    }
+
+    private static byte[] sign(String payload) {
+        byte[] signature = new byte[SIGNATURE_BYTES];
+        System.arraycopy(mac.get().doFinal(payload.getBytes(StandardCharsets.UTF_8)), 0, signature, 0, SIGNATURE_BYTES);
+        return signature;
+    }
+
+    private static void checkKey(String key) {
+        if (key.isEmpty()) throw new IllegalArgumentException("Empty handler key");
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '.' || c == '_')) throw new IllegalArgumentException("Invalid handler key: " + key);
+        }
+    }
+
+    private static class StatelessComponentSettings implements PersistentObject {
+        public String signingSecret;    // Base64; Changing it invalidates all stateless components sent so far
+
+        public StatelessComponentSettings() {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            signingSecret = base64.encodeToString(secret);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
 import net.sentientturtle.discordbot.components.module.command.Command;
 import net.sentientturtle.discordbot.components.module.command.CommandCall;
+import net.sentientturtle.discordbot.components.module.command.CommandDescriptor;
 import net.sentientturtle.discordbot.components.module.command.UnifiedCommand;
 import net.sentientturtle.discordbot.components.permission.BotPermission;
 import net.sentientturtle.discordbot.loader.Loader;
@@ -14,12 +15,16 @@ import net.sentientturtle.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.stream.Stream;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Top level class for bot modules
@@ -30,12 +35,84 @@ public abstract class BotModule implements StaticLoaded {
     private static final Logger logger = LoggerFactory.getLogger(BotModule.class);
     private static final Method commandMethod = null;
 
-    private final List<UnifiedCommand> commands;
+    private static final boolean allowReflectiveCommands = Boolean.getBoolean("net.sentientturtle.discordbot.reflectivecommands");   // Permit modules without a generated descriptor, e.g. plugins built without the annotation processor
+    private static final Map<Class<?>, CommandDescriptor<?>> descriptors = new ConcurrentHashMap<>();   // Concurrent, as plugins add and remove descriptors at runtime
+
+    static {
+        for (CommandDescriptor<?> descriptor : ServiceLoader.load(CommandDescriptor.class, BotModule.class.getClassLoader())) {
+            descriptors.put(descriptor.moduleClass(), descriptor);
+        }
+    }
+
+    /**
+     * Registers the command descriptors of a plugin
+     * @param classLoader Classloader of the plugin; Descriptors inherited from parent classloaders are ignored
+     */
+    static void addDescriptors(ClassLoader classLoader) {
+        for (CommandDescriptor<?> descriptor : ServiceLoader.load(CommandDescriptor.class, classLoader)) {
+            if (descriptor.getClass().getClassLoader() == classLoader) {
+                descriptors.put(descriptor.moduleClass(), descriptor);
+            }
+        }
+    }
+
+    static void removeDescriptor(Class<? extends BotModule> moduleClass) {
+        descriptors.remove(moduleClass);
+    }
+
+    /**
+     * Marks an event-listening module that must receive events before its first command, or while unused<br>
+     * Under lazy loading, events only reach modules that are loaded; Marked modules are loaded on startup instead, and are not unloaded when idle.
+     */
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface RequiresEvents {}
 
     protected BotModule() {
-        var methods = this.getClass().getDeclaredMethods();
         Loader.ensureStaticLoad();  // Ensure static loading has happened in order to make sure all listener-annotations have been registered.
-        commands = new ArrayList<>();
+    }
+
+    /**
+     * Creates the commands of a module, without requiring an instance of the module
+     * @param moduleClass Module to create commands for
+     * @param instance Supplier of the instance to bind command calls to; Only called when a non-static command is called
+     * @return Commands of the module
+     * @throws IllegalStateException If the module declares commands but has no generated descriptor, and reflective commands are not enabled
+     */
+    @SuppressWarnings("unchecked")  // Descriptors are indexed by their module class, so we know casting is safe.
+    static <T extends BotModule> List<UnifiedCommand> createCommands(Class<T> moduleClass, Supplier<? extends BotModule> instance) {
+        var descriptor = (CommandDescriptor<T>) descriptors.get(moduleClass);
+        if (descriptor != null) {
+            return descriptor.createCommands(() -> (T) instance.get());
+        } else if (Arrays.stream(moduleClass.getDeclaredMethods()).noneMatch(method -> method.isAnnotationPresent(Command.class))) {
+            return List.of();   // No descriptor is generated for modules without commands
+        } else if (allowReflectiveCommands) {
+            logger.warn("No generated command descriptor for module " + moduleClass.getName() + "; Falling back to reflection");
+            return reflectCommands(moduleClass, instance);
+        } else {
+            throw new IllegalStateException("No generated command descriptor for module " + moduleClass.getName() + "; Was it compiled without the command annotation processor, or were service files not merged when packaging?");
+        }
+    }
+
+    /**
+     * Called when the module is unloaded, after being idle or when disabled at runtime<br>
+     * Feature locks, the instance's health check, and the module's own presence are released automatically afterwards; Modules must release anything else acquired during construction, such as shutdown hooks and scheduled tasks.
+     */
+    protected void onUnload() {}
+
+    /**
+     * @return True if the module may be unloaded when unused, false if it holds state that must be kept, such as an active voice connection.
+     */
+    protected boolean isIdle() {
+        return true;
+    }
+
+    /**
+     * Fallback for modules compiled without the command annotation processor; Only used if the "net.sentientturtle.discordbot.reflectivecommands" system property is set
+     */
+    private static List<UnifiedCommand> reflectCommands(Class<? extends BotModule> moduleClass, Supplier<? extends BotModule> instance) {
+        var methods = moduleClass.getDeclaredMethods();
+        List<UnifiedCommand> commands = new ArrayList<>();
         methodloop:
         for (Method method : methods) {
             var commandAnnotation = method.getAnnotation(Command.class);
@@ -168,12 +245,13 @@ public abstract class BotModule implements StaticLoaded {
                                     Object[] parameters = new Object[callParameters.length + 1];
                                     parameters[0] = commandCall;
                                     System.arraycopy(callParameters, 0, parameters, 1, callParameters.length);
-                                    method.invoke(BotModule.this, parameters);
+                                    method.invoke(Modifier.isStatic(method.getModifiers()) ? null : instance.get(), parameters);
                                 }
                         )
                 );
             }
         }
+        return commands;
     }
 
     protected void addTopLevelCommandDescription(String commandName, String description) throws IllegalArgumentException {
@@ -185,7 +263,7 @@ public abstract class BotModule implements StaticLoaded {
     }
 
     @SuppressWarnings("unchecked")  // Instance cache is indexed by class, so we know casting is safe.
-    public static <T extends BotModule> T getInstance(Class<T> moduleClass) {
+    public static synchronized <T extends BotModule> T getInstance(Class<T> moduleClass) {
         return (T) instances.computeIfAbsent(moduleClass, aClass -> {
             try {
                 var constructor = aClass.getConstructor();
@@ -196,11 +274,11 @@ public abstract class BotModule implements StaticLoaded {
         });
     }
 
-    public final String getModuleName() {
-        return this.getClass().getSimpleName().toLowerCase();
+    static synchronized void releaseInstance(Class<? extends BotModule> moduleClass) {
+        instances.remove(moduleClass);
     }
 
-    public final Stream<UnifiedCommand> getCommands() {
-        return commands.stream();
+    public final String getModuleName() {
+        return this.getClass().getSimpleName().toLowerCase();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package net.sentientturtle.discordbot.components.module;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.privileges.CommandPrivilege;
+import net.sentientturtle.discordbot.components.core.Core;
+import net.sentientturtle.discordbot.components.core.Scheduling;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes command privileges to Discord after permissions change, without a full command registration<br>
+ * Requests are debounced by {@link #DEBOUNCE_MILLIS}, so a burst of grants results in a single update; Only one sync runs at a time.<br>
+ * Privileges are compared against the fingerprints recorded by {@link CommandRegistrar}, and only commands whose privileges changed are updated.
+ */
+final class CommandPrivilegeSync {
+    private static final Logger logger = LoggerFactory.getLogger(CommandPrivilegeSync.class);
+    private static final long DEBOUNCE_MILLIS = 2000;
+
+    private static boolean isScheduled = false;     // Guarded by CommandPrivilegeSync.class
+    private static boolean isRunning = false;       // Guarded by CommandPrivilegeSync.class
+    private static boolean isPending = false;       // Guarded by CommandPrivilegeSync.class; A request arrived while a sync was running
+
+    /**
+     * Requests a sync of command privileges
+     */
+    static synchronized void requestSync() {
+        if (isRunning) {
+            isPending = true;
+        } else if (!isScheduled) {
+            isScheduled = true;
+            Scheduling.schedule(Scheduling.Pool.BACKGROUND, CommandPrivilegeSync.class, CommandPrivilegeSync::sync, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void sync() {
+        synchronized (CommandPrivilegeSync.class) {
+            isScheduled = false;
+            isRunning = true;
+        }
+        Guild guild = Core.getGuild();
+        if (guild == null) {    // Not connected; Privileges are registered along with the commands on connect
+            finished();
+            return;
+        }
+        guild.retrieveCommands().queue(commands -> {
+            try {
+                update(guild, commands);
+            } catch (Throwable t) {
+                logger.error("Could not update command permissions", t);
+                finished();
+            }
+        }, failure -> {
+            logger.error("Could not retrieve registered commands; Command permissions not updated", failure);
+            finished();
+        });
+    }
+
+    private static void update(Guild guild, List<Command> commands) {
+        Map<String, Collection<CommandPrivilege>> privileges = new HashMap<>();     // By command ID, for all commands with privileges
+        Map<String, String> changedFingerprints = new HashMap<>();                  // By command name
+        Command changedCommand = null;
+        for (Command command : commands) {
+            if (command.isDefaultEnabled()) continue;
+            var name = command.getName();
+            privileges.put(command.getId(), CommandRegistrar.commandPrivileges(name));
+            var fingerprint = CommandRegistrar.privilegeFingerprint(name);
+            if (!fingerprint.equals(CommandRegistrar.registeredPrivilegeFingerprint(name))) {
+                changedFingerprints.put(name, fingerprint);
+                changedCommand = command;
+            }
+        }
+        if (changedFingerprints.isEmpty()) {
+            finished();
+            return;
+        }
+
+        logger.info("Updating command permissions: " + changedFingerprints.keySet());
+        if (changedFingerprints.size() == 1) {
+            guild.updateCommandPrivilegesById(changedCommand.getId(), privileges.get(changedCommand.getId())).queue(
+                    ignored -> recorded(changedFingerprints),
+                    CommandPrivilegeSync::failed
+            );
+        } else {    // The batch update replaces the privileges of every command in the guild, so must include unchanged commands too
+            guild.updateCommandPrivileges(Collections.unmodifiableMap(privileges)).queue(
+                    ignored -> recorded(changedFingerprints),
+                    CommandPrivilegeSync::failed
+            );
+        }
+    }
+
+    private static void recorded(Map<String, String> fingerprints) {
+        CommandRegistrar.recordPrivilegeFingerprints(fingerprints);
+        finished();
+    }
+
+    private static void failed(Throwable failure) {
+        logger.error("Could not update command permissions; Will retry on next change or registration", failure);
+        finished();
+    }
+
+    private static synchronized void finished() {
+        isRunning = false;
+        if (isPending) {
+            isPending = false;
+            requestSync();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package net.sentientturtle.discordbot.components.module;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.privileges.CommandPrivilege;
+import net.sentientturtle.discordbot.components.permission.BotPermission;
+import net.sentientturtle.discordbot.components.persistence.Persistence;
+import net.sentientturtle.discordbot.components.persistence.PersistentObject;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registers commands with Discord, only sending commands that changed since the last registration<br>
+ * Each top-level command is fingerprinted over its canonical command data and its privileges; Fingerprints of the last successful registration are persisted.<br>
+ * If the fingerprint of the whole command tree is unchanged, registration is skipped entirely.
+ */
+final class CommandRegistrar {
+    private static final Logger logger = LoggerFactory.getLogger(CommandRegistrar.class);
+    private static final RegisteredCommands registered = Persistence.loadObject(RegisteredCommands.class, RegisteredCommands::new);
+
+    private record Fingerprint(String data, String privileges) {}
+
+    /**
+     * @param guild Guild to register commands in
+     * @param commands Commands to register, replacing all currently registered commands
+     * @param force If true, overwrite all commands in bulk regardless of fingerprints
+     */
+    static synchronized void register(@NotNull Guild guild, @NotNull List<CommandData> commands, boolean force) {
+        var fingerprints = new TreeMap<String, Fingerprint>();
+        for (CommandData commandData : commands) {
+            fingerprints.put(
+                    commandData.getName(),
+                    new Fingerprint(
+                            sha256(canonical(commandData.toData().toMap())),
+                            commandData.isDefaultEnabled() ? "" : privilegeFingerprint(commandData.getName())
+                    )
+            );
+        }
+        String fingerprint = sha256(guild.getId() + fingerprints);
+
+        if (force) {
+            logger.info("Registering all commands: " + fingerprints.keySet());
+            overwrite(guild, commands, fingerprints, fingerprint);
+        } else if (fingerprint.equals(getFingerprint())) {
+            logger.info("Commands unchanged since last registration; Skipping");
+        } else {
+            synchronise(guild, commands, fingerprints, fingerprint);
+        }
+    }
+
+    private static String getFingerprint() {
+        synchronized (registered) {
+            return registered.fingerprint;
+        }
+    }
+
+    /**
+     * Bulk-overwrites all commands; Recovery path for when the registered commands are out of sync with the persisted fingerprints
+     */
+    private static void overwrite(Guild guild, List<CommandData> commands, Map<String, Fingerprint> fingerprints, String fingerprint) {
+        guild.updateCommands()
+                .addCommands(commands)
+                .queue(commandList -> {
+                    logger.info("Registered commands: " + commandList);
+                    Map<String, Collection<CommandPrivilege>> privileges = new HashMap<>();
+                    for (Command command : commandList) {
+                        if (!command.isDefaultEnabled()) {
+                            privileges.put(command.getId(), commandPrivileges(command.getName()));
+                        }
+                    }
+                    guild.updateCommandPrivileges(Collections.unmodifiableMap(privileges)).queue(map -> {
+                        logger.info("Updated command permissions: " + map.keySet());
+                        synchronized (registered) {
+                            registered.dataFingerprints.clear();
+                            registered.privilegeFingerprints.clear();
+                            fingerprints.forEach((name, commandFingerprint) -> {
+                                registered.dataFingerprints.put(name, commandFingerprint.data);
+                                registered.privilegeFingerprints.put(name, commandFingerprint.privileges);
+                            });
+                            registered.fingerprint = fingerprint;
+                        }
+                    });
+                });
+    }
+
+    /**
+     * Upserts changed commands, updates changed privileges, and deletes commands that no longer exist
+     */
+    private static void synchronise(Guild guild, List<CommandData> commands, Map<String, Fingerprint> fingerprints, String fingerprint) {
+        guild.retrieveCommands().queue(commandList -> {
+            Map<String, Command> existingCommands = commandList.stream().collect(Collectors.toMap(Command::getName, Function.identity(), (a, b) -> a));
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+
+            for (CommandData commandData : commands) {
+                var name = commandData.getName();
+                var commandFingerprint = fingerprints.get(name);
+                var existingCommand = existingCommands.get(name);
+                String previousData, previousPrivileges;
+                synchronized (registered) {
+                    previousData = registered.dataFingerprints.get(name);
+                    previousPrivileges = registered.privilegeFingerprints.get(name);
+                }
+
+                CompletableFuture<Command> command;
+                if (existingCommand == null || !commandFingerprint.data.equals(previousData)) {
+                    logger.info("Upserting command: " + name);
+                    command = guild.upsertCommand(commandData).submit();
+                } else {
+                    command = CompletableFuture.completedFuture(existingCommand);
+                }
+                // Upserting an existing command keeps its ID and privileges, so privileges are only sent if they changed or the command is new
+                boolean updatePrivileges = existingCommand == null || !commandFingerprint.privileges.equals(previousPrivileges);
+                pending.add(
+                        command.thenCompose(registeredCommand -> {
+                            if (updatePrivileges && !registeredCommand.isDefaultEnabled()) {
+                                logger.info("Updating command permissions: " + name);
+                                return guild.updateCommandPrivilegesById(registeredCommand.getId(), commandPrivileges(name)).submit();
+                            } else {
+                                return CompletableFuture.completedFuture(null);
+                            }
+                        }).thenRun(() -> {
+                            synchronized (registered) {
+                                registered.dataFingerprints.put(name, commandFingerprint.data);
+                                registered.privilegeFingerprints.put(name, commandFingerprint.privileges);
+                            }
+                        })
+                );
+            }
+
+            for (Command existingCommand : commandList) {
+                var name = existingCommand.getName();
+                if (!fingerprints.containsKey(name)) {
+                    logger.info("Deleting command: " + name);
+                    pending.add(existingCommand.delete().submit().thenRun(() -> {
+                        synchronized (registered) {
+                            registered.dataFingerprints.remove(name);
+                            registered.privilegeFingerprints.remove(name);
+                        }
+                    }));
+                }
+            }
+
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).whenComplete((ignored, throwable) -> {
+                if (throwable == null) {
+                    synchronized (registered) {
+                        registered.dataFingerprints.keySet().retainAll(fingerprints.keySet());
+                        registered.privilegeFingerprints.keySet().retainAll(fingerprints.keySet());
+                        registered.fingerprint = fingerprint;
+                    }
+                    logger.info("Commands synchronised (" + pending.size() + " checked)");
+                } else {
+                    logger.error("Error synchronising commands; Will retry on next registration", throwable);
+                }
+            });
+        }, throwable -> logger.error("Could not retrieve registered commands", throwable));
+    }
+
+    /**
+     * @return Fingerprint of the privileges a command should have
+     */
+    static String privilegeFingerprint(String commandName) {
+        return sha256(canonicalPrivileges(commandName));
+    }
+
+    /**
+     * @return Fingerprint of the privileges last registered for a command, or null if unknown
+     */
+    static String registeredPrivilegeFingerprint(String commandName) {
+        synchronized (registered) {
+            return registered.privilegeFingerprints.get(commandName);
+        }
+    }
+
+    /**
+     * Records privileges registered outside of a full registration; See {@link CommandPrivilegeSync}
+     * @param fingerprints Privilege fingerprints by command name
+     */
+    static void recordPrivilegeFingerprints(Map<String, String> fingerprints) {
+        synchronized (registered) {
+            registered.privilegeFingerprints.putAll(fingerprints);
+        }
+    }
+
+    static Collection<CommandPrivilege> commandPrivileges(String commandName) {
+        var commandPrivileges = new ArrayList<CommandPrivilege>();
+        var permission = BotPermission.STRING("cmd:" + commandName);
+
+        permission.getTargetedUsers().map(CommandPrivilege::enableUser).forEach(commandPrivileges::add);
+        permission.getTargetedRoles().map(CommandPrivilege::enableRole).forEach(commandPrivileges::add);
+        return commandPrivileges;
+    }
+
+    private static String canonicalPrivileges(String commandName) {
+        var permission = BotPermission.STRING("cmd:" + commandName);
+        return "users:" + permission.getTargetedUsers().sorted().toList() + ";roles:" + permission.getTargetedRoles().sorted().toList();
+    }
+
+    /**
+     * Serializes command data with map keys in sorted order, so equal commands always produce equal strings
+     */
+    private static String canonical(Object value) {
+        var builder = new StringBuilder();
+        canonical(value, builder);
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unchecked")  // Command data maps are always keyed by String
+    private static void canonical(Object value, StringBuilder builder) {
+        if (value instanceof Map<?, ?> map) {
+            builder.append('{');
+            new TreeMap<>((Map<String, ?>) map).forEach((key, entry) -> {
+                canonical(key, builder);
+                builder.append(':');
+                canonical(entry, builder);
+                builder.append(',');
+            });
+            builder.append('}');
+        } else if (value instanceof Collection<?> collection) {
+            builder.append('[');
+            for (Object entry : collection) {
+                canonical(entry, builder);
+                builder.append(',');
+            }
+            builder.append(']');
+        } else if (value instanceof String string) {
+            builder.append('"').append(string.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else {
+            builder.append(value);  // Numbers, booleans and null
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            var hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is a required algorithm", e);
+        }
+    }
+
+    private static class RegisteredCommands implements PersistentObject {
+        public String fingerprint = "";
+        public HashMap<String, String> dataFingerprints = new HashMap<>();
+        public HashMap<String, String> privilegeFingerprints = new HashMap<>();
+    }
+}
@@ -0,0 +1,117 @@
+package net.sentientturtle.discordbot.components.module;
+
+import net.sentientturtle.discordbot.components.core.FeatureLock;
+import net.sentientturtle.discordbot.components.core.StartupTimeline;
+import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
+import net.sentientturtle.discordbot.components.module.command.UnifiedCommand;
+import net.sentientturtle.discordbot.components.presence.PresenceManager;
+import net.sentientturtle.discordbot.components.presence.PresenceProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Handle for an enabled module; Holds the module's commands, and creates the module instance on first use.<br>
+ * Commands are bound to the handle rather than to an instance, so they can be registered without constructing the module.
+ */
+final class ModuleHandle {
+    private static final Logger logger = LoggerFactory.getLogger(ModuleHandle.class);
+    private final String name;
+    private final Class<? extends BotModule> moduleClass;
+    private final List<UnifiedCommand> commands;
+    private volatile BotModule instance = null;
+    private volatile long lastUsedNanos = System.nanoTime();
+    private boolean isRetired = false;
+
+    ModuleHandle(@NotNull String name, @NotNull Class<? extends BotModule> moduleClass) {
+        this.name = name;
+        this.moduleClass = moduleClass;
+        this.commands = BotModule.createCommands(moduleClass, this::get);
+    }
+
+    String name() {
+        return name;
+    }
+
+    Class<? extends BotModule> moduleClass() {
+        return moduleClass;
+    }
+
+    List<UnifiedCommand> commands() {
+        return commands;
+    }
+
+    /**
+     * Gets the module instance, loading it if required
+     * @return Module instance
+     */
+    BotModule get() {
+        lastUsedNanos = System.nanoTime();
+        BotModule module = instance;
+        if (module != null) return module;
+        synchronized (this) {
+            if (isRetired) throw new IllegalStateException("Module [" + name + "] has been disabled or replaced");
+            if (instance == null) {
+                logger.info("Loading module: [" + name + "]");
+                try (var ignored = StartupTimeline.begin("Module constructor: " + name)) {
+                    instance = BotModule.getInstance(moduleClass);
+                } catch (Throwable t) {
+                    ModuleManager.moduleLoadError(name, t);
+                    throw t;
+                }
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * @return Module instance, or null if the module is not currently loaded
+     */
+    @Nullable BotModule getIfLoaded() {
+        return instance;
+    }
+
+    /**
+     * Unloads the module if it is loaded, is idle, and has not been used for the specified time
+     * @param idleNanos Time since last use after which the module may be unloaded
+     * @return True if the module was unloaded
+     */
+    synchronized boolean unloadIfIdle(long idleNanos) {
+        BotModule module = instance;
+        if (module == null || System.nanoTime() - lastUsedNanos < idleNanos || !module.isIdle()) return false;
+        unload();
+        return true;
+    }
+
+    /**
+     * Unloads the module, and prevents it from being loaded again through this handle; Used when a module is disabled or replaced
+     */
+    synchronized void retire() {
+        isRetired = true;
+        unload();
+    }
+
+    /**
+     * Unloads the module if it is loaded; A later use will load a new instance.<br>
+     * After the module's {@link BotModule#onUnload()} hook, its feature locks, instance health check, and presence (if the module itself is a provider) are released.<br>
+     * Calls already in progress complete on the unloaded instance.
+     */
+    synchronized void unload() {
+        BotModule module = instance;
+        if (module == null) return;
+        instance = null;
+        logger.info("Unloading module: [" + name + "]");
+        try {
+            module.onUnload();
+        } catch (Throwable t) {
+            logger.error("Error while unloading module: [" + name + "]", t);
+        }
+        FeatureLock.tryUnlock(moduleClass, FeatureLock.values());
+        HealthCheck.removeInstance(module);
+        if (module instanceof PresenceProvider presenceProvider) PresenceManager.removeProvider(presenceProvider);
+        BotModule.releaseInstance(moduleClass);
+    }
+}
@@ -9,8 +9,8 @@ import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandGroupData;
-import net.dv8tion.jda.api.interactions.commands.privileges.CommandPrivilege;
 import net.sentientturtle.discordbot.components.core.Core;
+import net.sentientturtle.discordbot.components.core.Scheduling;
 import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
 import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
 import net.sentientturtle.discordbot.components.module.command.UnifiedCommand;
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -36,17 +37,20 @@ import java.util.stream.Stream;
  */
 public class ModuleManager implements StaticLoaded {
     private static final Logger logger = LoggerFactory.getLogger(ModuleManager.class);
-    public static final Map<String, Class<? extends BotModule>> modules =
+    private static final ConcurrentHashMap<String, Class<? extends BotModule>> moduleClasses =   // Concurrent, as plugins add and remove modules at runtime
             Loader.getModuleClasses(true)
-                    .collect(Collectors.toUnmodifiableMap(
+                    .collect(Collectors.toMap(
                             aClass -> aClass.getSimpleName().toLowerCase(),
-                            Function.identity()
+                            Function.identity(),
+                            (a, b) -> a,
+                            ConcurrentHashMap::new
                     ));
+    public static final Map<String, Class<? extends BotModule>> modules = Collections.unmodifiableMap(moduleClasses);
 
     private static final EnabledModules settings;
-    private static final ConcurrentHashMap<String, BotModule> moduleCache;
+    private static final ConcurrentHashMap<String, ModuleHandle> moduleCache;
     private static final ConcurrentHashMap<String, String> moduleLoadErrors;
-    private static final List<EventListener> eventListenerModules;
+    private static volatile List<ModuleHandle> eventListenerModules = List.of();    // Copy-on-write, replaced as modules are enabled and disabled
 
     static {
         settings = Persistence.loadObject(EnabledModules.class, EnabledModules::new);
@@ -64,15 +68,17 @@ public class ModuleManager implements StaticLoaded {
                 }
         );
 
+        BotPermission.addChangeListener(CommandPrivilegeSync::requestSync);
+
         modules.keySet()
                 .stream()
-                .filter(settings.enabledModules::contains)
+                .filter(module -> Core.isTrainingRun() || settings.enabledModules.contains(module))   // Training runs load all modules, to cover as many classes as possible
                 .forEach(ModuleManager::loadModule);
+        updateEventListeners();
 
-        eventListenerModules = moduleCache.values().stream()
-                .filter(EventListener.class::isInstance)
-                .map(module -> (EventListener) module)
-                .collect(Collectors.toList());
+        if (isLazyLoading() && settings.idleUnloadMinutes > 0) {
+            Scheduling.scheduleWithFixedDelay(Scheduling.Pool.BACKGROUND, ModuleManager.class, ModuleManager::unloadIdleModules, 1, 1, TimeUnit.MINUTES);
+        }
 
         logger.info("ModuleManager initialised!");
     }
@@ -84,7 +90,8 @@ public class ModuleManager implements StaticLoaded {
     static void addTopLevelCommandDescription(String commandName, String description) throws IllegalArgumentException {
         if (commandName.length() < 1 || commandName.length() > 32) throw new IllegalArgumentException("CommandName must be 1-32 characters in length");
         if (description.length() < 1 || description.length() > 100) throw new IllegalArgumentException("Description must be 1-100 characters in length");
-        if (topLevelDescriptions.putIfAbsent(commandName, description) != null) {
+        var previous = topLevelDescriptions.putIfAbsent(commandName, description);
+        if (previous != null && !previous.equals(description)) {    // Identical descriptions are allowed, as modules may be loaded more than once
             throw new IllegalArgumentException("Description for this command grouping was already set!");
         }
     }
@@ -92,7 +99,8 @@ public class ModuleManager implements StaticLoaded {
     static void addMidLevelCommandDescription(String commandName, String description) throws IllegalArgumentException {
         if (commandName.length() < 1 || commandName.length() > 32) throw new IllegalArgumentException("CommandName must be 1-32 characters in length");
         if (description.length() < 1 || description.length() > 100) throw new IllegalArgumentException("Description must be 1-100 characters in length");
-        if (midLevelDescriptions.putIfAbsent(commandName, description) != null) {
+        var previous = midLevelDescriptions.putIfAbsent(commandName, description);
+        if (previous != null && !previous.equals(description)) {
             throw new IllegalArgumentException("Description for this command grouping was already set!");
         }
     }
@@ -127,24 +135,61 @@ public class ModuleManager implements StaticLoaded {
         return option;
     }
 
+    /**
+     * Passes an event to loaded modules that listen for events; Under lazy loading, modules that are not loaded miss events unless marked {@link BotModule.RequiresEvents}.
+     */
     public static void onEvent(GenericEvent event) {
-        for (EventListener eventListenerModule : eventListenerModules) {
-            try {
-                eventListenerModule.onEvent(event);
-            } catch (Throwable t) {
-                logger.error("Error in module event listener: " + eventListenerModule, t);
+        for (ModuleHandle handle : eventListenerModules) {
+            if (handle.getIfLoaded() instanceof EventListener eventListenerModule) {
+                try {
+                    eventListenerModule.onEvent(event);
+                } catch (Throwable t) {
+                    logger.error("Error in module event listener: " + eventListenerModule, t);
+                }
             }
         }
     }
 
+    private static void updateEventListeners() {
+        eventListenerModules = moduleCache.values()
+                                       .stream()
+                                       .filter(handle -> isEventListener(handle.moduleClass()))
+                                       .toList();
+    }
+
+    private static boolean isEventListener(Class<? extends BotModule> moduleClass) {
+        return EventListener.class.isAssignableFrom(moduleClass);
+    }
+
+    private static boolean requiresEvents(Class<? extends BotModule> moduleClass) {
+        return moduleClass.isAnnotationPresent(BotModule.RequiresEvents.class);
+    }
+
+    private static boolean isLazyLoading() {
+        return settings.lazyLoading && !Core.isTrainingRun();
+    }
+
+    private static void unloadIdleModules() {
+        long idleNanos = TimeUnit.MINUTES.toNanos(settings.idleUnloadMinutes);
+        for (ModuleHandle handle : moduleCache.values()) {
+            if (!requiresEvents(handle.moduleClass())) handle.unloadIfIdle(idleNanos);
+        }
+    }
+
+    static void moduleLoadError(String moduleName, Throwable t) {
+        logger.error("Unable to load permitted module: [" + moduleName + "]", t);
+        moduleLoadErrors.put(moduleName, "Error during load: " + t.getClass().getSimpleName());
+    }
+
     public enum ModuleStatus {
         ENABLED,
-        PENDING_ENABLED,
+        PENDING_ENABLED,    // Enabled, but not loaded due to a load error
         DISABLED,
-        PENDING_DISABLED
+        PENDING_DISABLED    // Only observable while a module is being disabled
     }
 
     public static ModuleStatus moduleStatus(String module) {
+        module = module.toLowerCase();
         if (settings.enabledModules.contains(module)) {
             if (moduleCache.containsKey(module)) {
                 return ModuleStatus.ENABLED;
@@ -160,29 +205,57 @@ public class ModuleManager implements StaticLoaded {
         }
     }
 
-    private record CommandNode(Box<UnifiedCommand> command, HashMap<String, CommandGroupNode> groups) {}
+    // Sorted maps, so the generated command data is in a stable order for fingerprinting
+    private record CommandNode(Box<UnifiedCommand> command, TreeMap<String, CommandGroupNode> groups) {}
 
-    private record CommandGroupNode(Box<UnifiedCommand> command, HashMap<String, UnifiedCommand> leafCommands) {}
+    private record CommandGroupNode(Box<UnifiedCommand> command, TreeMap<String, UnifiedCommand> leafCommands) {}
 
-    private static HashMap<String, UnifiedCommand> commands = new HashMap<>();
+    private static volatile Map<String, UnifiedCommand> commands = Map.of();  // Replaced as a whole when commands are rebuilt
 
-    public static HashMap<String, UnifiedCommand> getCommandMap() {
+    public static Map<String, UnifiedCommand> getCommandMap() {
         return commands;
     }
 
     public static void registerCommands() throws IllegalStateException {
+        registerCommands(false);
+    }
+
+    /**
+     * Builds the command tree and registers it with Discord; Only commands that changed since the last registration are sent.
+     * @param force If true, all commands are overwritten even if unchanged
+     * @throws IllegalStateException If not connected to the target guild
+     */
+    public static void registerCommands(boolean force) throws IllegalStateException {
         Guild guild = Core.getGuild();
         if (guild == null) throw new IllegalStateException("Not connected to target Guild; Cannot register commands!");
 
+        CommandRegistrar.register(guild, buildCommands(), force);
+    }
+
+    /**
+     * Rebuilds the command tree after modules have changed, and registers the changes with Discord if connected
+     */
+    private static void updateCommands() {
+        List<CommandData> commands = buildCommands();
+        Guild guild = Core.getGuild();
+        if (guild != null) CommandRegistrar.register(guild, commands, false);   // If not yet connected, all commands are registered on connect
+    }
+
+    /**
+     * Builds the command tree of all loaded modules, and updates the command map used for dispatch.<br>
+     * Does not register the commands with Discord.
+     * @return Command data for registration
+     */
+    public static List<CommandData> buildCommands() {
         HashMap<String, UnifiedCommand> commandPathMap = new HashMap<>();
 
-        HashMap<String, CommandNode> commandTree = new HashMap<>();
+        TreeMap<String, CommandNode> commandTree = new TreeMap<>();
         moduleCache.values()
                 .stream()
-                .flatMap(BotModule::getCommands)
+                .flatMap(handle -> handle.commands().stream())
                 .forEach(unifiedCommand -> {
                     if (unifiedCommand.subcommandName() == null && unifiedCommand.subcommandGroup() == null) {  // Top level command
-                        var node = commandTree.computeIfAbsent(unifiedCommand.commandName(), s -> new CommandNode(Box.empty(), new HashMap<>()));
+                        var node = commandTree.computeIfAbsent(unifiedCommand.commandName(), s -> new CommandNode(Box.empty(), new TreeMap<>()));
                         if (node.groups.size() == 0) {
                             if (node.command.setIfEmpty(unifiedCommand)) {
                                 commandPathMap.put(unifiedCommand.path(), unifiedCommand);
@@ -193,12 +266,12 @@ public class ModuleManager implements StaticLoaded {
                             logger.error("Subcommands shadow top-level command: " + unifiedCommand);
                         }
                     } else if (unifiedCommand.subcommandGroup() == null) { // unifiedCommand.subcommandName() is known to be not null here   // Mid-level command
-                        var topNode = commandTree.computeIfAbsent(unifiedCommand.commandName(), s -> new CommandNode(Box.empty(), new HashMap<>()));
+                        var topNode = commandTree.computeIfAbsent(unifiedCommand.commandName(), s -> new CommandNode(Box.empty(), new TreeMap<>()));
                         if (!topNode.command.isEmpty()) {
                             logger.error("Subcommands shadow top-level command: " + topNode.command.get());
                             topNode.command.setValue(null);
                         }
-                        var midNode = topNode.groups.computeIfAbsent(unifiedCommand.subcommandName(), s -> new CommandGroupNode(Box.empty(), new HashMap<>()));
+                        var midNode = topNode.groups.computeIfAbsent(unifiedCommand.subcommandName(), s -> new CommandGroupNode(Box.empty(), new TreeMap<>()));
                         if (midNode.leafCommands.size() == 0) {
                             if (midNode.command.setIfEmpty(unifiedCommand)) {
                                 commandPathMap.put(unifiedCommand.path(), unifiedCommand);
@@ -209,12 +282,12 @@ public class ModuleManager implements StaticLoaded {
                             logger.error("Subcommands shadow mid-level command: " + unifiedCommand);
                         }
                     } else if (unifiedCommand.subcommandName() != null) { // && unifiedCommand.subcommandGroup() is known to be not null here   // Bottom-level command
-                        var topNode = commandTree.computeIfAbsent(unifiedCommand.commandName(), s -> new CommandNode(Box.empty(), new HashMap<>()));
+                        var topNode = commandTree.computeIfAbsent(unifiedCommand.commandName(), s -> new CommandNode(Box.empty(), new TreeMap<>()));
                         if (!topNode.command.isEmpty()) {
                             logger.error("Subcommands shadow top-level command: " + topNode.command.get());
                             topNode.command.setValue(null);
                         }
-                        var midNode = topNode.groups.computeIfAbsent(unifiedCommand.subcommandGroup(), s -> new CommandGroupNode(Box.empty(), new HashMap<>()));
+                        var midNode = topNode.groups.computeIfAbsent(unifiedCommand.subcommandGroup(), s -> new CommandGroupNode(Box.empty(), new TreeMap<>()));
                         if (!midNode.command.isEmpty()) {
                             logger.error("Subcommands shadow mid-level command: " + topNode.command.get());
                             midNode.command.setValue(null);
@@ -295,28 +368,8 @@ public class ModuleManager implements StaticLoaded {
             commands.add(commandData);
         });
 
-        logger.info("Registering commands: " + commands);
-
-        guild.updateCommands()
-                .addCommands(commands)
-                .queue(commandList -> {
-                    logger.info("Registered commands: " + commandList);
-                    logger.info("Updating command permissions...");
-                    Map<String, Collection<CommandPrivilege>> privileges = new HashMap<>();
-                    for (Command command : commandList) {
-                        if (!command.isDefaultEnabled()) {
-                            var commandPrivileges = privileges.computeIfAbsent(command.getId(), id -> new ArrayList<>());
-                            var permission = BotPermission.STRING("cmd:" + command.getName());
-
-                            permission.getTargetedUsers().map(CommandPrivilege::enableUser).forEach(commandPrivileges::add);
-                            permission.getTargetedRoles().map(CommandPrivilege::enableRole).forEach(commandPrivileges::add);
-                            privileges.put(command.getId(), commandPrivileges);
-                        }
-                    }
-                    Core.getGuild().updateCommandPrivileges(Collections.unmodifiableMap(privileges)).queue(map -> logger.info("Updated command permissions: " + map.keySet()));
-                });
-
-        ModuleManager.commands = commandPathMap;
+        ModuleManager.commands = Collections.unmodifiableMap(commandPathMap);
+        return commands;
     }
 
     public static boolean moduleExists(@NotNull String name) {
@@ -329,16 +382,16 @@ public class ModuleManager implements StaticLoaded {
                 try {
                     final Class<? extends BotModule> moduleClass = modules.get(moduleName);
                     if (moduleClass != null) {
-                        logger.info("Loading module: [" + moduleName + "]");
-                        return BotModule.getInstance(moduleClass);
+                        var handle = new ModuleHandle(moduleName, moduleClass);
+                        if (!isLazyLoading() || requiresEvents(moduleClass)) handle.get();    // Events do not trigger loading
+                        return handle;
                     } else {
                         logger.error("Attempt to load non-existent module: [" + moduleName + "]");
                         moduleLoadErrors.put(moduleName, "Attempt to load non-existent module");
                         return null;
                     }
                 } catch (Throwable t) {
-                    logger.error("Unable to load permitted module: [" + moduleName + "]", t);
-                    moduleLoadErrors.put(moduleName, "Error during load: " + t.getClass().getSimpleName());
+                    if (!moduleLoadErrors.containsKey(moduleName)) moduleLoadError(moduleName, t);  // Errors during construction are already reported by the handle
                     return null;
                 }
             } else {
@@ -347,25 +400,83 @@ public class ModuleManager implements StaticLoaded {
         });
     }
 
+    /**
+     * Enables a module, loads it, and registers its commands
+     * @param moduleName Module to enable
+     * @return True if the module was enabled, false if it does not exist or was already enabled
+     */
     public static synchronized boolean enableModule(String moduleName) {
         if (!moduleExists(moduleName)) return false;
+        moduleName = moduleName.toLowerCase();
         boolean modified = settings.enabledModules.add(moduleName);
         if (modified) {
             logger.info("Enable module: [" + moduleName + "]");
+            moduleLoadErrors.remove(moduleName);    // Allow retrying modules that previously failed to load
+            loadModule(moduleName);
+            var handle = moduleCache.get(moduleName);
+            if (handle != null) {
+                updateEventListeners();
+                updateCommands();
+            }
         }
         return modified;
     }
 
+    /**
+     * Disables a module, unloads it, and removes its commands
+     * @param moduleName Module to disable
+     * @return True if the module was disabled, false if it does not exist or was already disabled
+     */
     public static synchronized boolean disableModule(String moduleName) {
         if (!moduleExists(moduleName)) return false;
+        moduleName = moduleName.toLowerCase();
         boolean modified = settings.enabledModules.remove(moduleName);
         if (modified) {
             logger.info("Disabled module: [" + moduleName + "]");
+            moduleLoadErrors.remove(moduleName);
+            var handle = moduleCache.remove(moduleName);
+            if (handle != null) {
+                updateEventListeners();
+                updateCommands();
+                handle.retire();
+            }
         }
         return modified;
     }
 
+    /**
+     * Replaces the modules of a plugin; Used by {@link PluginManager} to load, reload and unload plugins<br>
+     * New modules are loaded and their commands routed before old modules are unloaded, and commands are re-registered once for the whole swap.
+     * @param removedModules Names of the modules to remove
+     * @param addedModules Modules to add, by name
+     * @return Names of the modules that were added; Modules that conflict with existing modules are skipped
+     */
+    static synchronized Set<String> replaceModules(Collection<String> removedModules, Map<String, Class<? extends BotModule>> addedModules) {
+        List<ModuleHandle> removedHandles = new ArrayList<>();
+        for (String moduleName : removedModules) {
+            moduleClasses.remove(moduleName);
+            moduleLoadErrors.remove(moduleName);
+            var handle = moduleCache.remove(moduleName);
+            if (handle != null) removedHandles.add(handle);
+        }
+        Set<String> added = new HashSet<>();
+        addedModules.forEach((moduleName, moduleClass) -> {
+            if (moduleClasses.putIfAbsent(moduleName, moduleClass) != null) {
+                logger.error("Plugin module [" + moduleName + "] conflicts with an existing module; Skipping");
+            } else {
+                added.add(moduleName);
+                if (settings.enabledModules.contains(moduleName)) loadModule(moduleName);
+            }
+        });
+        updateEventListeners();
+        updateCommands();
+        removedHandles.forEach(ModuleHandle::retire);
+        return added;
+    }
+
     private static class EnabledModules implements PersistentObject {
         public HashSet<String> enabledModules = new HashSet<>() {{ add("admin"); }};    // Double-bracket initialization here is ugly, but we need a mutable map here. Admin module is enabled by default to ensure bot can be used when cold-started without configs.
+        public boolean lazyLoading = false;     // If enabled, modules are only constructed on the first call of one of their commands, and only receive events once constructed
+        public long idleUnloadMinutes = 0;      // If lazy loading is enabled and this is above 0, modules are unloaded after being unused for this many minutes
     }
 }
@@ -0,0 +1,244 @@
+package net.sentientturtle.discordbot.components.module;
+
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ScanResult;
+import net.sentientturtle.discordbot.components.StaticInitException;
+import net.sentientturtle.discordbot.components.core.Scheduling;
+import net.sentientturtle.discordbot.components.core.Shutdown;
+import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
+import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
+import net.sentientturtle.discordbot.components.interaction.ButtonManager;
+import net.sentientturtle.discordbot.components.interaction.SelectionMenuManager;
+import net.sentientturtle.discordbot.components.interaction.StatelessComponents;
+import net.sentientturtle.discordbot.components.permission.BotPermission;
+import net.sentientturtle.discordbot.components.persistence.Persistence;
+import net.sentientturtle.discordbot.loader.StaticLoaded;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Loads modules from jars in the plugin folder, each jar into its own classloader<br>
+ * The plugin folder is watched; Changed jars are reloaded and removed jars are unloaded, without restarting the bot.<br>
+ * Jars are copied before loading, so they may be overwritten while loaded.<br>
+ * Plugin modules are unloaded through {@link BotModule#onUnload()}; State set up by the module must be released there.<br>
+ * Once a plugin is released, its scheduled tasks are cancelled, and its handlers, listeners, health checks, shutdown hooks and persistent objects are removed.
+ */
+public class PluginManager implements StaticLoaded {
+    private static final Logger logger = LoggerFactory.getLogger(PluginManager.class);
+    private static final long RELOAD_DELAY_MILLIS = 2000;   // Jars are often written in multiple steps; Wait for writes to settle before (re)loading
+    private static final Path pluginFolder;
+    private static final Path shadowFolder;
+    private static final WatchService watchService;
+    private static final ConcurrentHashMap<Path, Plugin> plugins = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Path, ScheduledFuture<?>> pendingReloads = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Path, String> pluginErrors = new ConcurrentHashMap<>();
+
+    private record Plugin(URLClassLoader classLoader, Path shadowCopy, Collection<Class<? extends BotModule>> moduleClasses, Set<String> modules) {}
+
+    static {
+        String pluginFolderPath = System.getProperty("net.sentientturtle.discordbot.pluginfolderpath");
+        File folder;
+        if (pluginFolderPath == null) {
+            folder = new File("./plugins");
+            if (!folder.isDirectory()) {    // Plugins are opt-in; Only use the default folder if it already exists
+                logger.info("Plugin folder path system variable (net.sentientturtle.discordbot.pluginfolderpath) not set and './plugins' does not exist; Plugins disabled");
+                folder = null;
+            }
+        } else {
+            folder = new File(pluginFolderPath);
+            if (!((folder.exists() && folder.isDirectory()) || folder.mkdirs())) {
+                throw new StaticInitException("Could not create plugin folder: " + folder);
+            }
+        }
+
+        if (folder != null) {
+            pluginFolder = folder.toPath().toAbsolutePath();
+            try {
+                shadowFolder = Files.createTempDirectory("discordbot-plugins");
+                shadowFolder.toFile().deleteOnExit();
+                watchService = FileSystems.getDefault().newWatchService();
+                pluginFolder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            } catch (IOException e) {
+                throw new StaticInitException("Could not watch plugin folder: " + pluginFolder, e);
+            }
+
+            try (var jars = Files.newDirectoryStream(pluginFolder, "*.jar")) {
+                for (Path jar : jars) reload(jar);
+            } catch (IOException e) {
+                throw new StaticInitException("Could not list plugin folder: " + pluginFolder, e);
+            }
+
+            var watcher = new Thread(PluginManager::watch, "Plugin watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+
+            Shutdown.registerHook(PluginManager::shutdown);
+        } else {
+            pluginFolder = null;
+            shadowFolder = null;
+            watchService = null;
+        }
+
+        HealthCheck.addStatic(
+                PluginManager.class,
+                () -> {
+                    if (pluginFolder == null) return HealthStatus.PAUSED;
+                    return pluginErrors.isEmpty() ? HealthStatus.RUNNING : HealthStatus.ERROR_NONCRITICAL;
+                },
+                () -> {
+                    if (pluginFolder == null) return Optional.empty();
+                    if (pluginErrors.isEmpty()) {
+                        return Optional.of(plugins.size() + " plugins loaded");
+                    } else {
+                        return Optional.of(plugins.size() + " plugins loaded, " + pluginErrors.size() + " failed");
+                    }
+                }
+        );
+    }
+
+    private static void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {     // Events were lost; Reload everything
+                        try (var jars = Files.newDirectoryStream(pluginFolder, "*.jar")) {
+                            jars.forEach(PluginManager::scheduleReload);
+                        } catch (IOException e) {
+                            logger.error("Could not list plugin folder: " + pluginFolder, e);
+                        }
+                        plugins.keySet().forEach(PluginManager::scheduleReload);
+                    } else if (event.context() instanceof Path path && path.getFileName().toString().endsWith(".jar")) {
+                        scheduleReload(pluginFolder.resolve(path));
+                    }
+                }
+                if (!key.reset()) {
+                    logger.error("Plugin folder is no longer accessible; Stopped watching for plugin changes");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // Shut down
+        }
+    }
+
+    private static void scheduleReload(Path jar) {
+        pendingReloads.compute(jar, (path, pending) -> {
+            if (pending != null) pending.cancel(false);
+            return Scheduling.schedule(Scheduling.Pool.BACKGROUND, PluginManager.class, () -> reload(path), RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Loads, reloads or unloads a plugin jar depending on its current state<br>
+     * If the new version of a plugin cannot be loaded, the previous version remains loaded.
+     */
+    private static synchronized void reload(Path jar) {
+        pendingReloads.remove(jar);
+        var previous = plugins.get(jar);
+        Set<String> previousModules = previous != null ? previous.modules : Set.of();
+
+        if (!Files.isRegularFile(jar)) {
+            pluginErrors.remove(jar);
+            if (previous != null) {
+                logger.info("Unloading plugin: " + jar.getFileName());
+                ModuleManager.replaceModules(previousModules, Map.of());
+                plugins.remove(jar);
+                release(previous);
+            }
+            return;
+        }
+
+        logger.info((previous == null ? "Loading" : "Reloading") + " plugin: " + jar.getFileName());
+        URLClassLoader classLoader = null;
+        Path shadowCopy = null;
+        try {
+            shadowCopy = shadowFolder.resolve(System.nanoTime() + "-" + jar.getFileName());
+            Files.copy(jar, shadowCopy);
+            shadowCopy.toFile().deleteOnExit();
+            classLoader = new URLClassLoader("plugin:" + jar.getFileName(), new URL[]{shadowCopy.toUri().toURL()}, PluginManager.class.getClassLoader());
+
+            Map<String, Class<? extends BotModule>> moduleClasses = new HashMap<>();
+            try (
+                    ScanResult result = new ClassGraph()
+                                                .overrideClassLoaders(classLoader)
+                                                .ignoreParentClassLoaders()
+                                                .enableClassInfo()
+                                                .scan()
+            ) {
+                for (ClassInfo classInfo : result.getAllStandardClasses()) {
+                    Class<?> loadedClass;
+                    try {
+                        loadedClass = Class.forName(classInfo.getName(), false, classLoader);
+                    } catch (LinkageError | ClassNotFoundException e) {
+                        logger.debug("Skipping unloadable plugin class " + classInfo.getName(), e);
+                        continue;
+                    }
+                    if (BotModule.class.isAssignableFrom(loadedClass) && !Modifier.isAbstract(loadedClass.getModifiers())) {
+                        var moduleClass = Class.forName(classInfo.getName(), true, classLoader).asSubclass(BotModule.class);
+                        moduleClasses.put(moduleClass.getSimpleName().toLowerCase(), moduleClass);
+                    }
+                }
+            }
+
+            BotModule.addDescriptors(classLoader);
+            Set<String> modules = ModuleManager.replaceModules(previousModules, moduleClasses);
+            plugins.put(jar, new Plugin(classLoader, shadowCopy, moduleClasses.values(), modules));
+            pluginErrors.remove(jar);
+            logger.info("Loaded plugin " + jar.getFileName() + " with modules " + modules);
+        } catch (Throwable t) {
+            logger.error("Could not load plugin: " + jar.getFileName() + (previous != null ? "; Previous version remains loaded" : ""), t);
+            pluginErrors.put(jar, t.getClass().getSimpleName());
+            if (classLoader != null) release(new Plugin(classLoader, shadowCopy, List.of(), Set.of()));
+            return;
+        }
+        if (previous != null) release(previous);
+    }
+
+    /**
+     * Releases what remains of a plugin after its modules have been removed
+     */
+    private static void release(Plugin plugin) {
+        plugin.moduleClasses.forEach(BotModule::removeDescriptor);
+        ButtonManager.removeHandlers(plugin.classLoader);
+        SelectionMenuManager.removeHandlers(plugin.classLoader);
+        StatelessComponents.removeHandlers(plugin.classLoader);
+        BotPermission.removeChangeListeners(plugin.classLoader);
+        HealthCheck.removeAll(plugin.classLoader);
+        Scheduling.cancelAll(plugin.classLoader);  // Including tasks scheduled outside of module instances, e.g. by static initialisers
+        Shutdown.runHooks(plugin.classLoader);     // After listeners are removed, so hooks leave plugin state as it would be at shutdown
+        Persistence.evict(plugin.classLoader);     // After shutdown hooks, which may update persistent objects
+        try {
+            plugin.classLoader.close();
+            if (plugin.shadowCopy != null) Files.deleteIfExists(plugin.shadowCopy);
+        } catch (IOException e) {
+            logger.warn("Could not clean up plugin classloader " + plugin.classLoader.getName(), e);
+        }
+    }
+
+    /**
+     * Stops watching for changes; Plugin classloaders remain open, as shutdown hooks of plugin modules may still need them
+     */
+    private static void shutdown() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Could not close plugin folder watcher", e);
+        }
+        pendingReloads.values().forEach(future -> future.cancel(false));
+    }
+}
@@ -3,11 +3,19 @@ package net.sentientturtle.discordbot.components.module.command;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.sentientturtle.discordbot.helpers.MessageHelper;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public abstract class CommandCall {
+    private static final Logger logger = LoggerFactory.getLogger(CommandCall.class);
+
     protected abstract SlashCommandEvent getEvent();
     public abstract UnifiedCommand getCommand();
     public abstract Object[] getParameters();
@@ -40,6 +48,45 @@ public abstract class CommandCall {
         getEvent().reply(message).setEphemeral(ephemeral).queue();
     }
 
+    /**
+     * Replies with lines of output; Sent inline in a code block if they fit in a message, otherwise uploaded as an attachment<br>
+     * The reply is deferred before lines are read, so slow sources do not miss Discord's acknowledgement deadline; The output is sent through the interaction hook.<br>
+     * Lines are streamed to the attachment rather than collected in memory; See {@link MessageHelper#collectLines(Iterator, String, int)}
+     * @param title Title of the output
+     * @param lines Lines of output
+     * @param fileName Name of the attachment, without extension
+     */
+    public void replyLines(String title, Iterator<String> lines, String fileName, boolean ephemeral) {
+        getEvent().deferReply(ephemeral).queue();
+        var hook = getEvent().getHook();
+        MessageHelper.LineOutput output;
+        try {
+            output = MessageHelper.collectLines(lines, fileName, MessageHelper.inlineLimit(title));
+        } catch (IOException | RuntimeException e) {   // The reply is already deferred, so errors must be reported through the hook
+            logger.error("Could not write command output", e);
+            hook.sendMessage("⚠ Could not write output!").queue();
+            return;
+        }
+        if (output.isInline()) {
+            assert output.inline() != null;
+            hook.sendMessage(MessageHelper.codeBlock(title, output.inline())).queue();
+        } else {
+            assert output.file() != null;
+            hook.sendMessage(title)
+                    .addFile(output.file(), output.fileName())
+                    .queue(message -> output.close(), failure -> output.close());
+        }
+    }
+
+    /**
+     * See {@link #replyLines(String, Iterator, String, boolean)}; Closes the stream
+     */
+    public void replyLines(String title, Stream<String> lines, String fileName, boolean ephemeral) {
+        try (lines) {
+            replyLines(title, lines.iterator(), fileName, ephemeral);
+        }
+    }
+
     public User getUser() {
         return getEvent().getUser();
     }
@@ -0,0 +1,24 @@
+package net.sentientturtle.discordbot.components.module.command;
+
+import net.sentientturtle.discordbot.components.module.BotModule;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Prebuilt command metadata for a module<br>
+ * Implementations are generated at compile time from {@link Command} annotated methods, and discovered through {@link java.util.ServiceLoader}
+ * @param <T> Module type
+ */
+public interface CommandDescriptor<T extends BotModule> {
+    /**
+     * @return Class of the module this descriptor was generated for
+     */
+    Class<T> moduleClass();
+
+    /**
+     * @param module Supplier of the module instance to bind command calls to; Called on each call of a non-static command, so that the module may be loaded lazily
+     * @return Commands of the module, bound to the specified instance supplier
+     */
+    List<UnifiedCommand> createCommands(Supplier<T> module);
+}
@@ -19,16 +19,28 @@ public record UnifiedCommand(
 ) {
     public UnifiedCommand {
         if (commandName.length() < 1 || commandName.length() > 32) throw new IllegalArgumentException("CommandName must be 1-32 characters in length");
-        if (!commandName.matches("^[\\w-]+$")) throw new IllegalArgumentException("CommandName may only contain alphanumeric characters, hyphens, and underscores");
+        if (!isValidName(commandName)) throw new IllegalArgumentException("CommandName may only contain alphanumeric characters, hyphens, and underscores");
         if (description.length() < 1 || description.length() > 100) throw new IllegalArgumentException("Description must be 1-100 characters in length");
         if (subcommandGroup != null && (subcommandGroup.length() < 1 || subcommandGroup.length() > 32)) throw new IllegalArgumentException("SubcommandGroup must be 1-32 characters in length");
-        if (subcommandGroup != null && !subcommandGroup.matches("^[\\w-]+$")) throw new IllegalArgumentException("SubcommandGroup may only contain alphanumeric characters and underscores");
+        if (subcommandGroup != null && !isValidName(subcommandGroup)) throw new IllegalArgumentException("SubcommandGroup may only contain alphanumeric characters and underscores");
         if (subcommandName != null && (subcommandName.length() < 1 || subcommandName.length() > 32)) throw new IllegalArgumentException("SubcommandName must be 1-32 characters in length");
-        if (subcommandName != null && !subcommandName.matches("^[\\w-]+$")) throw new IllegalArgumentException("SubcommandName may only contain alphanumeric characters and underscores");
+        if (subcommandName != null && !isValidName(subcommandName)) throw new IllegalArgumentException("SubcommandName may only contain alphanumeric characters and underscores");
         if (subcommandGroup != null && subcommandName == null) throw new IllegalArgumentException("SubcommandGroup may not be specified without subcommandName");
         if (requiredParameters.length + optionalParameters.length > 25) throw new IllegalArgumentException("Too many parameters (Must be <= 25, was: " + (requiredParameters.length + optionalParameters.length) + ")");
     }
 
+    /**
+     * Equivalent to matching {@code ^[\w-]+$}, without compiling a regex for every name.
+     */
+    private static boolean isValidName(String name) {
+        if (name.isEmpty()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-')) return false;
+        }
+        return true;
+    }
+
     public String path() {
         if (subcommandGroup != null) {
             return subcommandName + '/' + subcommandGroup + '/' + subcommandName;
@@ -43,7 +55,7 @@ public record UnifiedCommand(
         public Parameter {
             if (name.length() < 1 || name.length() > 32) throw new IllegalArgumentException("Name must be 1-32 characters in length");
             if (description.length() < 1 || description.length() > 100) throw new IllegalArgumentException("Description must be 1-100 characters in length");
-            if (!name.matches("^[\\w-]+$")) throw new IllegalArgumentException("Parameter name may only contain alphanumeric characters and underscores");
+            if (!isValidName(name)) throw new IllegalArgumentException("Parameter name may only contain alphanumeric characters and underscores");
             if (choices == null) throw new NullPointerException("Choices may not be null, and must be an empty array!");
             if (choices.length > 0) {
                 switch (parameterType) {
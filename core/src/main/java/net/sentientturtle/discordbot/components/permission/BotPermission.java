@@ -5,18 +5,36 @@ import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
 import net.sentientturtle.discordbot.components.persistence.Persistence;
 import net.sentientturtle.discordbot.components.persistence.PersistentObject;
+import net.sentientturtle.util.ConcurrentLongMap;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
- * Permissions for bot-use
+ * Permissions for bot-use<br>
+ * Checks read an immutable snapshot of the granted permissions, compiled into sorted ID arrays whenever grants change.<br>
+ * Decisions are cached per member, and expire after {@link #DECISION_TTL_SECONDS}; Each entry records the member's role IDs, and is discarded when the checked member's roles differ, so role changes take effect immediately.<br>
+ * All entries are discarded when grants change, or a role is deleted.
  */
 public class BotPermission {
-    private static final Permissions permissions = Persistence.loadObject(Permissions.class, Permissions::new);
+    private static final Permissions permissions = Persistence.loadObject(Permissions.class, Permissions::new);   // Persistent form; Guarded by itself
+    private static final long DECISION_TTL_SECONDS = 60;
+    private static final int MAX_CACHED_MEMBERS = 4096;
+    private static final ConcurrentLongMap<MemberDecisions> decisionCache = new ConcurrentLongMap<>();    // Writes guarded by itself
+    private static volatile Snapshot snapshot;
+    private static long cacheEpoch = 0;     // Guarded by decisionCache; Incremented on invalidation, so decisions computed before it are not cached
+    private static final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    static {
+        synchronized (permissions) {
+            snapshot = Snapshot.compile(permissions);
+        }
+    }
 
     private final Type type;
     private final Object value;
@@ -51,6 +69,36 @@ public class BotPermission {
         return new BotPermission(Type.STRING, permission);
     }
 
+    /**
+     * @return String form of this permission, for persistence; See {@link #decode(String)}
+     */
+    public String encode() {
+        return switch (this.type) {
+            case EVERYONE -> "EVERYONE";
+            case ROLE -> "ROLE:" + value;
+            case STRING -> "STRING:" + value;
+        };
+    }
+
+    /**
+     * @param encoded String form of a permission, as returned by {@link #encode()}
+     * @return Decoded permission
+     * @throws IllegalArgumentException If the string is not a valid encoded permission
+     */
+    public static BotPermission decode(@NotNull String encoded) {
+        int split = encoded.indexOf(':');
+        try {
+            return switch (split < 0 ? encoded : encoded.substring(0, split)) {
+                case "EVERYONE" -> EVERYONE();
+                case "ROLE" -> new BotPermission(Type.ROLE, Long.parseLong(encoded.substring(split + 1)));
+                case "STRING" -> STRING(encoded.substring(split + 1));
+                default -> throw new IllegalArgumentException("Invalid permission: " + encoded);
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid permission: " + encoded, e);
+        }
+    }
+
     public boolean isEveryone() {
         return this.type == Type.EVERYONE;
     }
@@ -61,10 +109,13 @@ public class BotPermission {
     public Stream<Long> getTargetedUsers() {
         return switch (this.type) {
             case EVERYONE, ROLE -> Stream.empty();
-            case STRING -> Stream.concat(
-                    permissions.usersWithAllPermissions.stream(),
-                    permissions.userStringPermissions.computeIfAbsent((String) this.value, s -> new HashSet<>()).stream()
-            ).distinct();
+            case STRING -> {
+                var current = snapshot;
+                yield LongStream.concat(
+                        LongStream.of(current.usersWithAllPermissions),
+                        LongStream.of(current.userStringPermissions.getOrDefault((String) this.value, Snapshot.NONE))
+                ).distinct().boxed();
+            }
         };
     }
 
@@ -75,7 +126,7 @@ public class BotPermission {
         return switch (this.type) {
             case EVERYONE -> Stream.empty();
             case ROLE -> Stream.of((Long) this.value);
-            case STRING -> permissions.roleStringPermissions.computeIfAbsent((String) this.value, s -> new HashSet<>()).stream();
+            case STRING -> LongStream.of(snapshot.roleStringPermissions.getOrDefault((String) this.value, Snapshot.NONE)).boxed();
         };
     }
 
@@ -95,18 +146,105 @@ public class BotPermission {
      * @return True if the specific user (Guild member) has this permission
      */
     public boolean memberHasPermission(Member member) {
+        if (this.type == Type.EVERYONE) return true;
+        long memberID = member.getIdLong();
+        long[] roleIDs = roleIDs(member);
+        var decisions = decisionCache.get(memberID);
+        if (decisions != null && decisions.isValid(roleIDs)) {
+            Boolean decision = decisions.decisions.get(this);
+            if (decision != null) return decision;
+        }
+
+        long epoch;
+        synchronized (decisionCache) {
+            epoch = cacheEpoch;
+        }
+        boolean decision = decide(member, snapshot);
+        synchronized (decisionCache) {
+            if (epoch == cacheEpoch) {      // Not invalidated while deciding
+                decisions = decisionCache.get(memberID);
+                if (decisions == null || !decisions.isValid(roleIDs)) {
+                    if (decisions == null && decisionCache.size() >= MAX_CACHED_MEMBERS) decisionCache.evictOne(memberID);
+                    decisions = new MemberDecisions(System.nanoTime() + TimeUnit.SECONDS.toNanos(DECISION_TTL_SECONDS), roleIDs);
+                    decisionCache.put(memberID, decisions);
+                }
+                decisions.decisions.put(this, decision);
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * @return Sorted IDs of the member's current roles
+     */
+    private static long[] roleIDs(Member member) {
+        var roles = member.getRoles();
+        long[] roleIDs = new long[roles.size()];
+        for (int i = 0; i < roleIDs.length; i++) roleIDs[i] = roles.get(i).getIdLong();
+        Arrays.sort(roleIDs);
+        return roleIDs;
+    }
+
+    private boolean decide(Member member, Snapshot current) {
+        long memberID = member.getIdLong();
+        if (Snapshot.contains(current.usersWithAllPermissions, memberID)) return true;
         return switch (this.type) {
             case EVERYONE -> true;
-            case ROLE -> permissions.usersWithAllPermissions.contains(member.getIdLong()) || member.getRoles().stream().anyMatch(role -> role.getId() == value);
+            case ROLE -> {
+                long roleID = (Long) this.value;
+                for (Role role : member.getRoles()) {
+                    if (role.getIdLong() == roleID) yield true;
+                }
+                yield false;
+            }
             case STRING -> {
-                var roles = permissions.roleStringPermissions.computeIfAbsent((String) this.value, s -> new HashSet<>());
-                yield permissions.usersWithAllPermissions.contains(member.getIdLong())
-                      || permissions.userStringPermissions.computeIfAbsent((String) this.value, s -> new HashSet<>()).contains(member.getIdLong())
-                      || member.getRoles().stream().anyMatch(role -> roles.contains(role.getIdLong()));
+                if (Snapshot.contains(current.userStringPermissions.getOrDefault((String) this.value, Snapshot.NONE), memberID)) yield true;
+                long[] roles = current.roleStringPermissions.getOrDefault((String) this.value, Snapshot.NONE);
+                if (roles.length == 0) yield false;
+                for (Role role : member.getRoles()) {
+                    if (Snapshot.contains(roles, role.getIdLong())) yield true;
+                }
+                yield false;
             }
         };
     }
 
+    /**
+     * Adds a listener that is called after a grant or revoke changes permissions, on the thread that made the change
+     */
+    public static void addChangeListener(@NotNull Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Removes all change listeners defined by classes of the specified classloader; Used when unloading plugins
+     */
+    public static void removeChangeListeners(@NotNull ClassLoader classLoader) {
+        changeListeners.removeIf(listener -> listener.getClass().getClassLoader() == classLoader);
+    }
+
+    /**
+     * Discards all cached decisions; Called when roles are deleted
+     */
+    public static void invalidateAll() {
+        synchronized (decisionCache) {
+            decisionCache.removeIf(entry -> true);
+            cacheEpoch++;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BotPermission that)) return false;
+        return type == that.type && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + Objects.hashCode(value);
+    }
+
     // Most of the API is used through instance methods, making separation of the below concerns into a new "PermissionManager" class clumsy
 
     /**
@@ -115,7 +253,13 @@ public class BotPermission {
      * @return True if the user did not already have this permission
      */
     public static boolean grantPermission(User user, String permission) {
-        return permissions.userStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).add(user.getIdLong());
+        boolean changed;
+        synchronized (permissions) {
+            changed = permissions.userStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).add(user.getIdLong());
+            if (changed) recompile();
+        }
+        if (changed) changeListeners.forEach(Runnable::run);
+        return changed;
     }
 
     /**
@@ -124,7 +268,13 @@ public class BotPermission {
      * @return True if the role did not already have this permission
      */
     public static boolean grantPermission(Role role, String permission) {
-        return permissions.roleStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).add(role.getIdLong());
+        boolean changed;
+        synchronized (permissions) {
+            changed = permissions.roleStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).add(role.getIdLong());
+            if (changed) recompile();
+        }
+        if (changed) changeListeners.forEach(Runnable::run);
+        return changed;
     }
 
     /**
@@ -133,7 +283,13 @@ public class BotPermission {
      * @return True if the user had this permission
      */
     public static boolean revokePermission(User user, String permission) {
-        return permissions.userStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).remove(user.getIdLong());
+        boolean changed;
+        synchronized (permissions) {
+            changed = permissions.userStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).remove(user.getIdLong());
+            if (changed) recompile();
+        }
+        if (changed) changeListeners.forEach(Runnable::run);
+        return changed;
     }
 
     /**
@@ -142,7 +298,26 @@ public class BotPermission {
      * @return True if the role had this permission
      */
     public static boolean revokePermission(Role role, String permission) {
-        return permissions.roleStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).remove(role.getIdLong());
+        boolean changed;
+        synchronized (permissions) {
+            changed = permissions.roleStringPermissions.computeIfAbsent(permission, s -> new HashSet<>()).remove(role.getIdLong());
+            if (changed) recompile();
+        }
+        if (changed) changeListeners.forEach(Runnable::run);
+        return changed;
+    }
+
+    /**
+     * Compiles a new snapshot from the persistent form, and discards cached decisions
+     */
+    private static void recompile() {
+        assert Thread.holdsLock(permissions);
+        var compiled = Snapshot.compile(permissions);
+        synchronized (decisionCache) {
+            snapshot = compiled;
+            decisionCache.removeIf(entry -> true);
+            cacheEpoch++;
+        }
     }
 
     private enum Type {
@@ -151,6 +326,51 @@ public class BotPermission {
         STRING,
     }
 
+    /**
+     * Immutable copy of the granted permissions; ID arrays are sorted, for binary search
+     */
+    private record Snapshot(long[] usersWithAllPermissions, Map<String, long[]> userStringPermissions, Map<String, long[]> roleStringPermissions) {
+        private static final long[] NONE = new long[0];
+
+        static Snapshot compile(Permissions permissions) {
+            return new Snapshot(toSortedArray(permissions.usersWithAllPermissions), compile(permissions.userStringPermissions), compile(permissions.roleStringPermissions));
+        }
+
+        private static Map<String, long[]> compile(Map<String, HashSet<Long>> grants) {
+            var compiled = new HashMap<String, long[]>();
+            grants.forEach((permission, ids) -> {
+                if (!ids.isEmpty()) compiled.put(permission, toSortedArray(ids));
+            });
+            return Map.copyOf(compiled);
+        }
+
+        private static long[] toSortedArray(Set<Long> ids) {
+            return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+
+        static boolean contains(long[] sortedIDs, long id) {
+            return Arrays.binarySearch(sortedIDs, id) >= 0;
+        }
+    }
+
+    private static final class MemberDecisions {
+        private final long expiresNanos;
+        private final long[] roleIDs;   // Sorted role IDs of the member when the decisions were made
+        private final ConcurrentHashMap<BotPermission, Boolean> decisions = new ConcurrentHashMap<>();
+
+        private MemberDecisions(long expiresNanos, long[] roleIDs) {
+            this.expiresNanos = expiresNanos;
+            this.roleIDs = roleIDs;
+        }
+
+        /**
+         * @return True if these decisions have not expired, and were made for the same roles
+         */
+        private boolean isValid(long[] currentRoleIDs) {
+            return System.nanoTime() - expiresNanos < 0 && Arrays.equals(roleIDs, currentRoleIDs);
+        }
+    }
+
     private static class Permissions implements PersistentObject {
         public HashSet<Long> usersWithAllPermissions = new HashSet<>();
         public HashMap<String, HashSet<Long>> userStringPermissions = new HashMap<>();
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
 import net.sentientturtle.discordbot.components.StaticInitException;
 import net.sentientturtle.discordbot.components.core.Scheduling;
 import net.sentientturtle.discordbot.components.core.Shutdown;
+import net.sentientturtle.discordbot.components.core.StartupTimeline;
 import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
 import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
@@ -68,7 +69,7 @@ public class Persistence implements StaticLoaded {
                         .configure(YAMLGenerator.Feature.WRITE_DOC_START_MARKER, false)
                         .configure(YAMLGenerator.Feature.MINIMIZE_QUOTES, true)
         );
-        saveDaemon = Scheduling.scheduleAtFixedRate(Persistence::save, 0, 1, TimeUnit.HOURS);
+        saveDaemon = Scheduling.scheduleAtFixedRate(Scheduling.Pool.BACKGROUND, Persistence.class, Persistence::save, 0, 1, TimeUnit.HOURS);
 
         Shutdown.registerHook(() -> saveDaemon.cancel(true));
         Shutdown.registerHook(Persistence::save);
@@ -96,8 +97,18 @@ public class Persistence implements StaticLoaded {
             return (T) cachedObject;      // We know cachedObject is assignable to T because of the parameter bounds; All cache entries are created from either `tClass` or `defaultSupplier`
         }
 
+        // A previous version of the class, from a plugin that is being reloaded, shares the data file; Save and drop it so that this version loads its latest state
+        objectCache.entrySet().removeIf(entry -> {
+            if (entry.getKey().getName().equals(objectClass.getName())) {
+                saveObject(entry.getKey(), entry.getValue());
+                return true;
+            } else {
+                return false;
+            }
+        });
+
         var filename = objectClass.getSimpleName() + ".yaml";
-        try {
+        try (var ignored = StartupTimeline.begin("Persistence load: " + objectClass.getName())) {
             var datafile = new File(dataFolder, filename);
             T dataObject;
             if (datafile.exists()) {
@@ -128,19 +139,44 @@ public class Persistence implements StaticLoaded {
         }
     }
 
+    /**
+     * Gets a file in the data folder, for components that manage their own storage format
+     * @param filename Name of the file; Letters and periods only
+     * @return File in the data folder, which may not yet exist
+     */
+    public static File dataFile(@NotNull String filename) {
+        if (!isFilenameSanitized(filename)) throw new IllegalArgumentException("Unsanitized filename: " + filename);
+        return new File(dataFolder, filename);
+    }
+
     public static synchronized void save() {
         for (Map.Entry<Class<? extends PersistentObject>, PersistentObject> entry : objectCache.entrySet()) {
-            var key = entry.getKey();
-            var value = entry.getValue();
+            saveObject(entry.getKey(), entry.getValue());
+        }
+    }
 
-            var filename = key.getSimpleName() + ".yaml";
-            var datafile = new File(dataFolder, filename);
-            try {
-                yamlMapper.writeValue(datafile, value);
-            } catch (IOException e) {
-                logger.error("Unable to save [" + key.getCanonicalName() + "]", e);
-                failedSave = true;
+    /**
+     * Saves and drops all cached objects of classes defined by the specified classloader; Used when unloading plugins, so that the objects of an old plugin version are not saved over those of the new version
+     * @param classLoader Classloader of the objects to evict
+     */
+    public static synchronized void evict(@NotNull ClassLoader classLoader) {
+        objectCache.entrySet().removeIf(entry -> {
+            if (entry.getKey().getClassLoader() == classLoader) {
+                saveObject(entry.getKey(), entry.getValue());
+                return true;
+            } else {
+                return false;
             }
+        });
+    }
+
+    private static void saveObject(Class<? extends PersistentObject> objectClass, PersistentObject object) {
+        var datafile = new File(dataFolder, objectClass.getSimpleName() + ".yaml");
+        try {
+            yamlMapper.writeValue(datafile, object);
+        } catch (IOException e) {
+            logger.error("Unable to save [" + objectClass.getCanonicalName() + "]", e);
+            failedSave = true;
         }
     }
 
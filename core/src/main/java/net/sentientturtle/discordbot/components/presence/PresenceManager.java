@@ -28,9 +28,9 @@ public class PresenceManager implements StaticLoaded {
                                     i -> new LinkedList<>() // values
                             ));
 
-        Scheduling.scheduleAtFixedRate(PresenceManager::update, 10, 10, TimeUnit.SECONDS);
+        Core.onPhase(Core.Phase.GATEWAY_READY, () -> Scheduling.scheduleAtFixedRate(Scheduling.Pool.BACKGROUND, PresenceManager.class, PresenceManager::update, 10, 10, TimeUnit.SECONDS));
 
-        HealthCheck.addStatic(PresenceManager.class, () -> Core.getJDA() != null ? HealthStatus.RUNNING : HealthStatus.STARTING);
+        HealthCheck.addStatic(PresenceManager.class, () -> Core.hasReachedPhase(Core.Phase.GATEWAY_READY) ? HealthStatus.RUNNING : HealthStatus.STARTING);
     }
 
     /**
@@ -2,74 +2,201 @@ package net.sentientturtle.discordbot.helpers;
 
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.interactions.components.ActionRow;
-import net.sentientturtle.discordbot.components.interaction.ButtonManager;
 import net.sentientturtle.discordbot.components.permission.BotPermission;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Class containing helper functions for constructing Discord messages
  */
 public class MessageHelper {
-    private static final long LINES_PER_PAGE = 10;
+    public static final int MAX_MESSAGE_LENGTH = 2000;
+    private static final long COMPRESS_THRESHOLD_BYTES = 1024 * 1024;          // Attachments above this size are gzipped
+    private static final long MAX_ATTACHMENT_BYTES = 8 * 1024 * 1024 - 65536;  // Discord's upload limit, with room for buffered output and the truncation notice
 
     /**
-     * Creates an automatic pagination message using Discord buttons
+     * Creates an automatic pagination message using Discord buttons; See {@link Paginator} for content that should be loaded lazily
      * @param title Title of the paginated content
      * @param content Lines of content to display
      * @param page Initial page to display
      * @return Message containing the pagination
      */
     public static Message paginate(@NotNull String title, @NotNull Collection<String> content, @Range(from = 1, to = Integer.MAX_VALUE) long page) {
-        final String pageText = content.stream().skip((page - 1) * LINES_PER_PAGE)
-                .limit(LINES_PER_PAGE)
-                .collect(Collectors.joining("\n"));
-
-        boolean isLastPage = (content.size() - (page * LINES_PER_PAGE)) < 0;
-
-        AtomicBoolean isStale = new AtomicBoolean(false);
-
-        var builder = new MessageBuilder()
-                .append(title)
-                .appendCodeBlock(pageText, "")
-                .append("Page ").append(String.valueOf(page));
-
-        if (page > 1) {
-            if (!isLastPage) {
-                builder.setActionRows(ActionRow.of(
-                        ButtonManager.newPrimary("Previous", buttonClickEvent -> {
-                            buttonClickEvent.editMessage(paginate(title, content, page - 1)).queue();
-                            isStale.set(true);
-                        }, isStale::get, BotPermission.EVERYONE()),
-                        ButtonManager.newPrimary("Next", buttonClickEvent -> {
-                            buttonClickEvent.editMessage(paginate(title, content, page + 1)).queue();
-                            isStale.set(true);
-                        }, isStale::get, BotPermission.EVERYONE())
-                ));
-            } else {
-                builder.setActionRows(ActionRow.of(
-                        ButtonManager.newPrimary("Previous", buttonClickEvent -> {
-                            buttonClickEvent.editMessage(paginate(title, content, page - 1)).queue();
-                            isStale.set(true);
-                        }, isStale::get, BotPermission.EVERYONE())
-                ));
+        List<String> lines = content instanceof List<String> list ? list : new ArrayList<>(content);
+        return new Paginator(title, Paginator.PageSource.of(lines), Paginator.DEFAULT_PAGE_SIZE, BotPermission.EVERYONE()).message(page);
+    }
+
+    /**
+     * @return Message with a title, and text in a code block; The text must fit within {@link #inlineLimit(String)}
+     */
+    public static Message codeBlock(@NotNull String title, @NotNull String text) {
+        return new MessageBuilder().append(title).appendCodeBlock(text, "").build();
+    }
+
+    /**
+     * @return Maximum length of text that fits in a {@link #codeBlock(String, String)} message with the specified title
+     */
+    public static int inlineLimit(@NotNull String title) {
+        return MAX_MESSAGE_LENGTH - title.length() - "```\n\n```".length();
+    }
+
+    /**
+     * Collects lines of output, which are kept in memory only while they fit within the inline limit<br>
+     * Once the limit is exceeded, lines are streamed to a temporary file for upload as an attachment; Large files are gzipped, and output beyond Discord's upload limit is truncated.
+     * @param lines Lines of output; Consumed by this method
+     * @param fileName Name of the attachment, without extension
+     * @param inlineLimit Maximum length of inline output
+     * @return The output; Must be closed, to delete the temporary file
+     * @throws IOException If the temporary file could not be written
+     */
+    public static LineOutput collectLines(@NotNull Iterator<String> lines, @NotNull String fileName, int inlineLimit) throws IOException {
+        var inline = new StringBuilder();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (inline.length() + (inline.isEmpty() ? 0 : 1) + line.length() > inlineLimit) {
+                try (var spool = new Spool()) {
+                    spool.write(inline);
+                    inline = null;      // Release the inline text before streaming the rest
+                    spool.writeLine(line);
+                    while (lines.hasNext() && !spool.isFull()) spool.writeLine(lines.next());
+                    if (lines.hasNext()) spool.writeLine("[Output truncated]");
+                    return new LineOutput(null, spool.finish(), fileName + (spool.isCompressed ? ".txt.gz" : ".txt"));
+                }
             }
-        } else if (!isLastPage) {
-            builder.setActionRows(ActionRow.of(
-                    ButtonManager.newPrimary("Next", buttonClickEvent -> {
-                        buttonClickEvent.editMessage(paginate(title, content, page + 1)).queue();
-                        isStale.set(true);
-                    }, isStale::get, BotPermission.EVERYONE())
-            ));
+            if (!inline.isEmpty()) inline.append('\n');
+            inline.append(line);
+        }
+        return new LineOutput(inline.toString(), null, fileName + ".txt");
+    }
+
+    /**
+     * Output collected by {@link #collectLines(Iterator, String, int)}; Either inline text, or a temporary file to attach
+     */
+    public static final class LineOutput implements AutoCloseable {
+        private final @Nullable String inline;
+        private final @Nullable File file;
+        private final String fileName;
+
+        private LineOutput(@Nullable String inline, @Nullable File file, @NotNull String fileName) {
+            this.inline = inline;
+            this.file = file;
+            this.fileName = fileName;
         }
 
-        if (isLastPage) builder.append(" (last page)");
+        public boolean isInline() {
+            return inline != null;
+        }
+
+        /**
+         * @return Inline text, or null if the output was spooled to a file
+         */
+        public @Nullable String inline() {
+            return inline;
+        }
+
+        /**
+         * @return Temporary file holding the output, or null if the output is inline
+         */
+        public @Nullable File file() {
+            return file;
+        }
 
-        return builder.build();
+        /**
+         * @return Name for the attachment, including extension
+         */
+        public @NotNull String fileName() {
+            return fileName;
+        }
+
+        /**
+         * Deletes the temporary file, if any
+         */
+        @Override
+        public void close() {
+            if (file != null) //noinspection ResultOfMethodCallIgnored
+                file.delete();
+        }
+    }
+
+    /**
+     * Temporary file that output is streamed to; Starts as plain text, and is converted to gzip once it exceeds {@link #COMPRESS_THRESHOLD_BYTES}
+     */
+    private static final class Spool implements Closeable {
+        private File file;
+        private FileOutputStream fileStream;
+        private OutputStream out;
+        private long plainBytes = 0;
+        private boolean isCompressed = false;
+        private boolean isFinished = false;
+
+        private Spool() throws IOException {
+            file = Files.createTempFile("output", ".txt").toFile();
+            fileStream = new FileOutputStream(file);
+            out = new BufferedOutputStream(fileStream);
+        }
+
+        void writeLine(String line) throws IOException {
+            if (plainBytes > 0) write("\n");
+            write(line);
+        }
+
+        void write(CharSequence text) throws IOException {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            plainBytes += bytes.length;
+            if (!isCompressed && plainBytes > COMPRESS_THRESHOLD_BYTES) compress();
+        }
+
+        /**
+         * @return True if the file has reached the upload limit; For gzip, this is checked against the compressed bytes written so far
+         */
+        boolean isFull() throws IOException {
+            return isCompressed ? fileStream.getChannel().size() >= MAX_ATTACHMENT_BYTES : plainBytes >= MAX_ATTACHMENT_BYTES;
+        }
+
+        /**
+         * Re-writes the plain text written so far into a gzip file, and continues writing there
+         */
+        private void compress() throws IOException {
+            out.close();
+            var plainFile = file;
+            file = Files.createTempFile("output", ".txt.gz").toFile();
+            fileStream = new FileOutputStream(file);
+            out = new GZIPOutputStream(new BufferedOutputStream(fileStream), 8192);
+            isCompressed = true;
+            try (var in = new FileInputStream(plainFile)) {
+                in.transferTo(out);
+            } finally {
+                //noinspection ResultOfMethodCallIgnored
+                plainFile.delete();
+            }
+        }
+
+        File finish() throws IOException {
+            out.close();
+            isFinished = true;
+            return file;
+        }
+
+        /**
+         * Closes the file, and deletes it unless it was finished
+         */
+        @Override
+        public void close() throws IOException {
+            if (isFinished) return;
+            out.close();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
     }
 }
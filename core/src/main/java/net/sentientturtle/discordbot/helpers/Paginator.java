@@ -0,0 +1,189 @@
+package net.sentientturtle.discordbot.helpers;
+
+import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.Button;
+import net.sentientturtle.discordbot.components.core.Scheduling;
+import net.sentientturtle.discordbot.components.interaction.ButtonManager;
+import net.sentientturtle.discordbot.components.permission.BotPermission;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pagination session for a message, using Discord buttons<br>
+ * Pages are loaded lazily from a {@link PageSource}, and the last few are cached; Memory use is proportional to the page size rather than the size of the content.<br>
+ * The same two buttons, and their handlers, are used for every page turn. The session expires after {@link #SESSION_TIMEOUT_MINUTES} without use, releasing its handlers and pages.
+ */
+public class Paginator {
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    private static final long SESSION_TIMEOUT_MINUTES = 15;
+    private static final int CACHED_PAGES = 3;
+
+    private final String title;
+    private final int pageSize;
+    private final Button previousButton;
+    private final Button nextButton;
+    private PageSource source;              // Guarded by this; Null once expired
+    private final Map<Long, Page> cache = new LinkedHashMap<>(CACHED_PAGES * 2, 0.75f, true) {     // Guarded by this
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private long currentPage = 0;           // Guarded by this; Zero-based
+    private long lastUsedMillis;            // Guarded by this
+    private volatile boolean isExpired = false;
+
+    /**
+     * Lines of one page
+     * @param lines Lines of the page, at most the page size
+     * @param isLast True if there are no further pages
+     */
+    public record Page(List<String> lines, boolean isLast) {}
+
+    /**
+     * Lazy source of pages, e.g. a database query with an offset and limit
+     */
+    @FunctionalInterface
+    public interface PageSource {
+        /**
+         * @param page Zero-based page number
+         * @param pageSize Maximum number of lines in a page
+         * @return The page; Pages past the end are empty, and last
+         */
+        Page load(long page, int pageSize);
+
+        /**
+         * @return Source paging through an in-memory list
+         */
+        static PageSource of(@NotNull List<String> lines) {
+            return (page, pageSize) -> {
+                long start = Math.min(page * pageSize, lines.size());
+                int end = (int) Math.min(start + pageSize, lines.size());
+                return new Page(lines.subList((int) start, end), end >= lines.size());
+            };
+        }
+
+        /**
+         * Source paging through an iterator; Moving forward continues the current iterator, moving back to a page that is not cached restarts it
+         * @param iterators Supplier of iterators over the same lines, e.g. a query that is re-run from the start
+         */
+        static PageSource of(@NotNull Supplier<? extends Iterator<String>> iterators) {
+            return new IteratorSource(iterators);
+        }
+    }
+
+    /**
+     * @param title Title of the paginated content
+     * @param source Source of pages
+     * @param pageSize Number of lines per page
+     * @param permission Permission required to turn pages
+     */
+    public Paginator(@NotNull String title, @NotNull PageSource source, @Range(from = 1, to = Integer.MAX_VALUE) int pageSize, @NotNull BotPermission permission) {
+        this.title = title;
+        this.source = source;
+        this.pageSize = pageSize;
+        this.previousButton = ButtonManager.newPrimary("Previous", event -> turn(event, -1), () -> isExpired, permission);
+        this.nextButton = ButtonManager.newPrimary("Next", event -> turn(event, 1), () -> isExpired, permission);
+        this.lastUsedMillis = System.currentTimeMillis();
+        Scheduling.schedule(Scheduling.Pool.BACKGROUND, Paginator.class, this::expireIfIdle, SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param page Page to display, one-based
+     * @return Message displaying the page
+     */
+    public synchronized Message message(@Range(from = 1, to = Integer.MAX_VALUE) long page) {
+        currentPage = page - 1;
+        return render();
+    }
+
+    private void turn(ButtonClickEvent event, int direction) {
+        Message message;
+        synchronized (this) {
+            if (source == null) return;
+            currentPage = Math.max(0, currentPage + direction);
+            lastUsedMillis = System.currentTimeMillis();
+            message = render();
+        }
+        event.editMessage(message).queue();
+    }
+
+    private Message render() {
+        Page page = cache.get(currentPage);
+        if (page == null) {
+            page = source.load(currentPage, pageSize);
+            cache.put(currentPage, page);
+        }
+
+        var builder = new MessageBuilder()
+                .append(title)
+                .appendCodeBlock(String.join("\n", page.lines), "")
+                .append("Page ").append(String.valueOf(currentPage + 1));
+        if (page.isLast) builder.append(" (last page)");
+        if (currentPage > 0 || !page.isLast) {
+            builder.setActionRows(ActionRow.of(
+                    previousButton.withDisabled(currentPage == 0),
+                    nextButton.withDisabled(page.isLast)
+            ));
+        }
+        return builder.build();
+    }
+
+    private void expireIfIdle() {
+        long idleMillis;
+        synchronized (this) {
+            idleMillis = System.currentTimeMillis() - lastUsedMillis;
+            if (idleMillis >= TimeUnit.MINUTES.toMillis(SESSION_TIMEOUT_MINUTES)) {
+                isExpired = true;
+                source = null;
+                cache.clear();
+            }
+        }
+        if (isExpired) {
+            ButtonManager.removeHandler(previousButton.getId());
+            ButtonManager.removeHandler(nextButton.getId());
+        } else {
+            Scheduling.schedule(Scheduling.Pool.BACKGROUND, this::expireIfIdle, TimeUnit.MINUTES.toMillis(SESSION_TIMEOUT_MINUTES) - idleMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static final class IteratorSource implements PageSource {
+        private final Supplier<? extends Iterator<String>> iterators;
+        private Iterator<String> iterator = null;   // Guarded by this
+        private long position = 0;                  // Guarded by this; Index of the next line of the iterator
+
+        private IteratorSource(Supplier<? extends Iterator<String>> iterators) {
+            this.iterators = iterators;
+        }
+
+        @Override
+        public synchronized Page load(long page, int pageSize) {
+            long offset = page * pageSize;
+            if (iterator == null || offset < position) {
+                iterator = iterators.get();
+                position = 0;
+            }
+            while (position < offset && iterator.hasNext()) {
+                iterator.next();
+                position++;
+            }
+            List<String> lines = new ArrayList<>(pageSize);
+            while (lines.size() < pageSize && iterator.hasNext()) {
+                lines.add(iterator.next());
+                position++;
+            }
+            return new Page(lines, !iterator.hasNext());
+        }
+    }
+}
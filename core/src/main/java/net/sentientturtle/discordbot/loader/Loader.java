@@ -4,6 +4,7 @@ import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassInfo;
 import io.github.classgraph.ScanResult;
 import net.sentientturtle.discordbot.components.StaticInitException;
+import net.sentientturtle.discordbot.components.core.StartupTimeline;
 import net.sentientturtle.discordbot.components.module.BotModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,7 @@ public class Loader {
 
     private static void scan() {
         try (
+                var ignored = StartupTimeline.begin("ClassGraph scan");
                 ScanResult result = new ClassGraph()
                                             .enableClassInfo()
                                             .scan()
@@ -58,7 +60,7 @@ public class Loader {
             var classLoader = Loader.class.getClassLoader();
             if (!hasScanned) scan();
             for (String name : staticLoaded) {
-                try {
+                try (var ignored = StartupTimeline.begin("Static init: " + name)) {
                     logger.debug("Attempting static initialization of " + name);
                     Class.forName(name, true, classLoader);
                 } catch (Throwable t) {
@@ -0,0 +1,213 @@
+package net.sentientturtle.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe map from primitive long keys to values, without boxing keys<br>
+ * Entries are spread over independently locked segments, each an open-addressing hash table; Removal shifts entries back instead of leaving tombstones, so tables do not degrade under churn.<br>
+ * Null values are not permitted.
+ */
+public class ConcurrentLongMap<V> {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    @SuppressWarnings("unchecked")
+    private final Segment<V>[] segments = new Segment[SEGMENTS];
+
+    public ConcurrentLongMap() {
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment<>();
+    }
+
+    /**
+     * @return The previous value for the key, or null if there was none
+     */
+    public @Nullable V put(long key, @NotNull V value) {
+        long hash = mix(key);
+        return segmentFor(hash).put(key, value, hash);
+    }
+
+    public @Nullable V get(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * @return The removed value, or null if the key was not present
+     */
+    public @Nullable V remove(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, null, hash);
+    }
+
+    /**
+     * Removes the entry for the key only if it currently maps to the specified value (compared by identity)
+     * @return True if the entry was removed
+     */
+    public boolean remove(long key, @NotNull V value) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, value, hash) != null;
+    }
+
+    /**
+     * Removes all entries whose value matches the predicate; Each segment is locked while it is scanned<br>
+     * The predicate may be tested more than once for retained entries, as removal can shift entries of a probe run that wraps around the table.
+     * @return Number of removed entries
+     */
+    public int removeIf(@NotNull Predicate<? super V> predicate) {
+        int removed = 0;
+        for (Segment<V> segment : segments) removed += segment.removeIf(predicate);
+        return removed;
+    }
+
+    /**
+     * Removes one arbitrary entry from the segment the key belongs to, which need not contain the key; Bounds the size of caches without clearing them
+     * @return The removed value, or null if the segment was empty
+     */
+    public @Nullable V evictOne(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).evictOne(hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) size += segment.size();
+        return size;
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    /**
+     * Murmur3 finalizer; Sequential and snowflake IDs have poorly distributed low bits
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Segment<V> {
+        private long[] keys = new long[16];
+        private Object[] values = new Object[16];   // A null value marks an empty entry
+        private int size = 0;
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(long key, V value, long hash) {
+            int mask = keys.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (values[i] == null) {
+                    keys[i] = key;
+                    values[i] = value;
+                    if (++size > keys.length / 2) grow();
+                    return null;
+                }
+                if (keys[i] == key) {
+                    var previous = (V) values[i];
+                    values[i] = value;
+                    return previous;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, long hash) {
+            int mask = keys.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (values[i] == null) return null;
+                if (keys[i] == key) return (V) values[i];
+            }
+        }
+
+        /**
+         * @param expected Value the key must map to, or null to remove any value
+         */
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long key, @Nullable V expected, long hash) {
+            int mask = keys.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (values[i] == null) return null;
+                if (keys[i] == key) {
+                    var value = (V) values[i];
+                    if (expected != null && value != expected) return null;
+                    deleteAt(i);
+                    return value;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized int removeIf(Predicate<? super V> predicate) {
+            int removed = 0;
+            int i = 0;
+            while (i < keys.length) {
+                if (values[i] != null && predicate.test((V) values[i])) {
+                    deleteAt(i);    // May shift a later entry into this index, so it is examined again
+                    removed++;
+                } else {
+                    i++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Removes the first entry at or after the hash's home index; Hashes are well mixed, so this is an arbitrary entry of the segment
+         */
+        @SuppressWarnings("unchecked")
+        synchronized V evictOne(long hash) {
+            if (size == 0) return null;
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values[i] == null) i = (i + 1) & mask;
+            var value = (V) values[i];
+            deleteAt(i);
+            return value;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Removes the entry at the index, shifting back later entries of the same probe run that would otherwise become unreachable
+         */
+        private void deleteAt(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            for (int i = (hole + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+                int home = (int) mix(keys[i]) & mask;
+                boolean homeInGap = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);   // Entry is reachable without passing the hole
+                if (!homeInGap) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            values[hole] = null;
+            size--;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] == null) continue;
+                int i = (int) mix(oldKeys[j]) & mask;
+                while (values[i] != null) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.sentientturtle.util;
+
+/**
+ * Thread-safe set of primitive longs, without boxing<br>
+ * Values are spread over independently locked segments, each an open-addressing hash table, so concurrent adds of different values rarely contend.<br>
+ * Only supports adding and querying; Intended for deduplication, e.g. of user IDs.
+ */
+public class ConcurrentLongSet {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final long EMPTY = 0;    // Zero is tracked separately, as it marks empty table entries
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public ConcurrentLongSet() {
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+    }
+
+    /**
+     * @return True if the value was added, false if it was already in the set
+     */
+    public boolean add(long value) {
+        long hash = mix(value);
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))].add(value, hash);
+    }
+
+    public boolean contains(long value) {
+        long hash = mix(value);
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))].contains(value, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) size += segment.size();
+        return size;
+    }
+
+    /**
+     * Murmur3 finalizer; Snowflake IDs have poorly distributed low bits
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Segment {
+        private long[] table = new long[16];
+        private int size = 0;
+        private boolean hasZero = false;
+
+        synchronized boolean add(long value, long hash) {
+            if (value == EMPTY) {
+                if (hasZero) return false;
+                hasZero = true;
+                return true;
+            }
+            int mask = table.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (table[i] == value) return false;
+                if (table[i] == EMPTY) {
+                    table[i] = value;
+                    if (++size > table.length / 2) grow();
+                    return true;
+                }
+            }
+        }
+
+        synchronized boolean contains(long value, long hash) {
+            if (value == EMPTY) return hasZero;
+            int mask = table.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (table[i] == value) return true;
+                if (table[i] == EMPTY) return false;
+            }
+        }
+
+        synchronized int size() {
+            return size + (hasZero ? 1 : 0);
+        }
+
+        private void grow() {
+            long[] oldTable = table;
+            table = new long[oldTable.length * 2];
+            int mask = table.length - 1;
+            for (long value : oldTable) {
+                if (value == EMPTY) continue;
+                int i = (int) mix(value) & mask;
+                while (table[i] != EMPTY) i = (i + 1) & mask;
+                table[i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package net.sentientturtle.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * Cron-style schedule, with minute precision<br>
+ * Supports the standard five fields (minute, hour, day of month, month, day of week), with lists, ranges, steps, month and day names, and the macros {@code @hourly}, {@code @daily}, {@code @weekly}, {@code @monthly}, and {@code @yearly}.<br>
+ * As in standard cron, if neither the day of month nor the day of week field starts with {@code *}, a day matching either fires; Otherwise a day must match both.<br>
+ * Fields are parsed once into bitmasks; {@link #next(Instant)} jumps directly to the next matching value of each field, instead of stepping through time.
+ */
+public final class CronSchedule {
+    private static final String[] MONTH_NAMES = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+    private static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    private static final int MAX_SEARCH_YEARS = 28;     // The calendar repeats every 28 years, barring skipped leap years
+
+    private final String expression;
+    private final ZoneId zone;
+    private final long minutes;         // Bits 0-59
+    private final long hours;           // Bits 0-23
+    private final long daysOfMonth;     // Bits 1-31
+    private final long months;          // Bits 1-12
+    private final long daysOfWeek;      // Bits 0-6, Sunday is 0
+    private final boolean isDayOfMonthRestricted;
+    private final boolean isDayOfWeekRestricted;
+
+    /**
+     * @param expression Cron expression
+     * @param zone Time zone in which the expression is evaluated
+     * @throws IllegalArgumentException If the expression is invalid, or never matches
+     */
+    public CronSchedule(@NotNull String expression, @NotNull ZoneId zone) {
+        this.expression = expression.trim();
+        this.zone = zone;
+        String[] fields = expandMacro(this.expression).split("\\s+");
+        if (fields.length != 5) throw new IllegalArgumentException("Expected 5 fields, got " + fields.length);
+        minutes = parseField(fields[0], 0, 59, null, "minute");
+        hours = parseField(fields[1], 0, 23, null, "hour");
+        daysOfMonth = parseField(fields[2], 1, 31, null, "day of month");
+        months = parseField(fields[3], 1, 12, MONTH_NAMES, "month");
+        long dayOfWeekBits = parseField(fields[4], 0, 7, DAY_NAMES, "day of week");
+        daysOfWeek = (dayOfWeekBits | (dayOfWeekBits >>> 7)) & 0x7F;    // 7 is also Sunday
+        isDayOfMonthRestricted = !fields[2].startsWith("*");
+        isDayOfWeekRestricted = !fields[4].startsWith("*");
+
+        if (nextLocal(LocalDateTime.of(2000, 1, 1, 0, 0)) == null) throw new IllegalArgumentException("Schedule never fires");
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    /**
+     * @param after Instant after which to find the next firing time
+     * @return Next firing time strictly after the specified instant, or null if there is none within the next {@value MAX_SEARCH_YEARS} years
+     */
+    public @Nullable Instant next(@NotNull Instant after) {
+        var start = LocalDateTime.ofInstant(after, zone).truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        while (true) {
+            var local = nextLocal(start);
+            if (local == null) return null;
+            var instant = ZonedDateTime.of(local, zone).toInstant();    // Times in a DST gap are shifted forward, times in an overlap use the earlier offset
+            if (instant.isAfter(after)) return instant;
+            start = local.plusMinutes(1);   // Repeated local time after a DST overlap; Already fired
+        }
+    }
+
+    /**
+     * @return First matching local time at or after the specified start
+     */
+    private @Nullable LocalDateTime nextLocal(LocalDateTime start) {
+        int endYear = start.getYear() + MAX_SEARCH_YEARS;
+        int year = start.getYear();
+        int month = start.getMonthValue();
+        int day = start.getDayOfMonth();
+        int hour = start.getHour();
+        int minute = start.getMinute();
+        while (year <= endYear) {
+            int nextMonth = nextBit(months, month);
+            if (nextMonth < 0) {
+                year++;
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            } else if (nextMonth != month) {
+                month = nextMonth;
+                day = 1;
+                hour = 0;
+                minute = 0;
+            }
+
+            int nextDay = nextBit(dayMask(year, month), day);
+            if (nextDay < 0) {
+                month++;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            } else if (nextDay != day) {
+                day = nextDay;
+                hour = 0;
+                minute = 0;
+            }
+
+            int nextHour = nextBit(hours, hour);
+            if (nextHour < 0) {
+                day++;
+                hour = 0;
+                minute = 0;
+                continue;
+            } else if (nextHour != hour) {
+                hour = nextHour;
+                minute = 0;
+            }
+
+            int nextMinute = nextBit(minutes, minute);
+            if (nextMinute < 0) {
+                hour++;
+                minute = 0;
+                continue;
+            }
+            return LocalDateTime.of(year, month, day, hour, nextMinute);
+        }
+        return null;
+    }
+
+    /**
+     * @return Bitmask of matching days in the specified month, bits 1-31
+     */
+    private long dayMask(int year, int month) {
+        long monthDays = ((1L << YearMonth.of(year, month).lengthOfMonth()) - 1) << 1;
+        int firstDayOfWeek = LocalDate.of(year, month, 1).getDayOfWeek().getValue() % 7;
+        // Rotate so bit k is set if the (k+1)th of the month matches, then repeat for each week of the month
+        long week = ((daysOfWeek >>> firstDayOfWeek) | (daysOfWeek << (7 - firstDayOfWeek))) & 0x7F;
+        long daysOfWeekInMonth = (week | (week << 7) | (week << 14) | (week << 21) | (week << 28)) << 1;
+        long matching = isDayOfMonthRestricted && isDayOfWeekRestricted ? daysOfMonth | daysOfWeekInMonth : daysOfMonth & daysOfWeekInMonth;
+        return matching & monthDays;
+    }
+
+    /**
+     * @return Lowest set bit at or above the specified index, or -1 if there is none
+     */
+    private static int nextBit(long mask, int from) {
+        if (from >= Long.SIZE) return -1;
+        long masked = mask & (-1L << from);
+        return masked == 0 ? -1 : Long.numberOfTrailingZeros(masked);
+    }
+
+    private static String expandMacro(String expression) {
+        return switch (expression.toLowerCase(Locale.ROOT)) {
+            case "@hourly" -> "0 * * * *";
+            case "@daily", "@midnight" -> "0 0 * * *";
+            case "@weekly" -> "0 0 * * 0";
+            case "@monthly" -> "0 0 1 * *";
+            case "@yearly", "@annually" -> "0 0 1 1 *";
+            default -> expression;
+        };
+    }
+
+    private static long parseField(String field, int min, int max, @Nullable String[] names, String fieldName) {
+        long bits = 0;
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseValue(part.substring(slash + 1), 1, max, null, fieldName);
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if (part.equals("*")) {
+                from = min;
+                to = max;
+            } else {
+                int dash = part.indexOf('-');
+                if (dash >= 0) {
+                    from = parseValue(part.substring(0, dash), min, max, names, fieldName);
+                    to = parseValue(part.substring(dash + 1), min, max, names, fieldName);
+                    if (to < from) throw new IllegalArgumentException("Invalid " + fieldName + " range: " + part);
+                } else {
+                    from = parseValue(part, min, max, names, fieldName);
+                    to = slash >= 0 ? max : from;   // "5/15" means every 15 from 5
+                }
+            }
+            for (int value = from; value <= to; value += step) bits |= 1L << value;
+        }
+        return bits;
+    }
+
+    private static int parseValue(String value, int min, int max, @Nullable String[] names, String fieldName) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(value)) return i + (min == 0 ? 0 : 1);
+            }
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + fieldName + ": " + value);
+        }
+        if (parsed < min || parsed > max) throw new IllegalArgumentException("Invalid " + fieldName + ": " + value + " (expected " + min + "-" + max + ")");
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        return expression + " (" + zone.getId() + ")";
+    }
+}
@@ -0,0 +1,176 @@
+package net.sentientturtle.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records, each framed as length, CRC32 and body<br>
+ * A torn or corrupt record ends the log when it is replayed, as it can only be the result of an interrupted write; Replaying must be followed by {@link #rewrite(Iterable)}, which drops the torn tail and opens the log for appending.<br>
+ * A failed append or force may leave a partial record, which ends replay before any record appended after it; Callers should {@link #rewrite(Iterable)} the log before appending again.<br>
+ * Appended records are buffered until {@link #force()}.<br>
+ * Not thread-safe; Callers must synchronize.
+ */
+public final class RecordLog implements AutoCloseable {
+    private static final int FRAME_BYTES = 8;
+    private final File file;
+    private final int maxRecordLength;
+    private FileOutputStream fileStream = null;
+    private DataOutputStream log = null;
+    private long writtenBytes = 0;
+
+    /**
+     * Receives records during {@link #replay(RecordConsumer)}
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(byte[] body) throws IOException;
+    }
+
+    /**
+     * Writes the body of a record
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Creates a log; The file is not opened until {@link #replay(RecordConsumer)} or {@link #rewrite(Iterable)}
+     * @param file File of the log
+     * @param maxRecordLength Maximum length of a record body; Longer records are treated as corrupt
+     */
+    public RecordLog(@NotNull File file, int maxRecordLength) {
+        this.file = file;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * @return Body of a record, as written by the specified writer
+     */
+    public static byte[] body(@NotNull BodyWriter writer) throws IOException {
+        var buffer = new ByteArrayOutputStream(64);
+        writer.write(new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Reads every complete record of the log, in order
+     * @param consumer Consumer of record bodies
+     * @return False if the log ended in a torn or corrupt record, which was ignored
+     */
+    public boolean replay(@NotNull RecordConsumer consumer) throws IOException {
+        if (!file.exists()) return true;
+        try (var in = new BufferedInputStream(new FileInputStream(file))) {
+            while (true) {
+                byte[] frame = in.readNBytes(FRAME_BYTES);
+                if (frame.length == 0) return true;
+                if (frame.length < FRAME_BYTES) return false;
+                var header = ByteBuffer.wrap(frame);
+                int length = header.getInt(0);
+                int checksum = header.getInt(4);
+                if (length < 0 || length > maxRecordLength) return false;
+                byte[] body = in.readNBytes(length);
+                var crc = new CRC32();
+                crc.update(body);
+                if (body.length != length || (int) crc.getValue() != checksum) return false;
+                consumer.accept(body);
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the log with the specified records, and opens it for appending
+     * @param records Bodies of the records to keep
+     */
+    public void rewrite(@NotNull Iterable<byte[]> records) throws IOException {
+        var previous = fileStream;
+        fileStream = null;
+        log = null;
+        writtenBytes = 0;
+        if (previous != null) previous.close();    // Unforced records are replaced, and may follow a failed write; They are dropped instead of flushed
+        var compacted = new File(file.getPath() + ".tmp");
+        try (var out = new FileOutputStream(compacted)) {
+            var compactedLog = new DataOutputStream(new BufferedOutputStream(out));
+            for (byte[] body : records) writtenBytes += write(compactedLog, body);
+            compactedLog.flush();
+            out.getChannel().force(false);
+        }
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileStream = new FileOutputStream(file, true);
+        log = new DataOutputStream(new BufferedOutputStream(fileStream));
+    }
+
+    /**
+     * Appends a record; Buffered until the next {@link #force()}
+     * @param body Body of the record
+     */
+    public void append(byte[] body) throws IOException {
+        if (log == null) throw new IOException("Record log is not open: " + file);
+        if (body.length > maxRecordLength) throw new IllegalArgumentException("Record too long: " + body.length + " bytes");
+        writtenBytes += write(log, body);
+    }
+
+    /**
+     * Forces appended records to disk
+     */
+    public void force() throws IOException {
+        if (log == null) throw new IOException("Record log is not open: " + file);
+        log.flush();
+        fileStream.getChannel().force(false);
+    }
+
+    /**
+     * Removes all records, and forces the empty log to disk
+     */
+    public void truncate() throws IOException {
+        if (log == null) throw new IOException("Record log is not open: " + file);
+        log.flush();
+        fileStream.getChannel().truncate(0);
+        fileStream.getChannel().force(false);
+        writtenBytes = 0;
+    }
+
+    /**
+     * @return Number of bytes written since the log was last rewritten or truncated
+     */
+    public long writtenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return True if the log is open for appending
+     */
+    public boolean isOpen() {
+        return log != null;
+    }
+
+    /**
+     * Forces appended records to disk, and closes the log
+     */
+    @Override
+    public void close() throws IOException {
+        if (log == null) return;
+        try {
+            force();
+        } finally {
+            var previous = fileStream;
+            fileStream = null;
+            log = null;
+            previous.close();   // Not flushed again if forcing failed
+        }
+    }
+
+    private static int write(DataOutputStream out, byte[] body) throws IOException {
+        var crc = new CRC32();
+        crc.update(body);
+        out.writeInt(body.length);
+        out.writeInt((int) crc.getValue());
+        out.write(body);
+        return FRAME_BYTES + body.length;
+    }
+}
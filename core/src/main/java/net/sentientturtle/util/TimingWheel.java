@@ -0,0 +1,221 @@
+package net.sentientturtle.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed hierarchical timing wheel, for large numbers of coarse-grained timers <br>
+ * Scheduling and cancellation are O(1); Timers expire on the first tick at or after their deadline, so may run up to one tick late. <br>
+ * The wheel does not keep time itself; It must be advanced regularly with {@link #advance(long, Consumer)}, e.g. once per tick.
+ */
+public class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;  // Enough levels to cover any tick count
+    private final long tickNanos;
+    private final long startNanos;
+    private final Slot[][] wheels = new Slot[LEVELS][SLOTS];
+    private long currentTick = 0;
+    private int size = 0;
+
+    /**
+     * @param tickDuration Duration of one tick; The precision of timers
+     * @param unit Unit of the tick duration
+     * @param startNanos Start time of the wheel, as {@link System#nanoTime()}
+     */
+    public TimingWheel(long tickDuration, @NotNull TimeUnit unit, long startNanos) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        if (tickNanos <= 0) throw new IllegalArgumentException("Tick duration must be positive");
+        this.startNanos = startNanos;
+        for (Slot[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) wheel[i] = new Slot();
+        }
+    }
+
+    /**
+     * @return Duration of one tick, in nanoseconds
+     */
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Schedules a timer
+     * @param task Task to hand to the expiry consumer once the timer expires
+     * @param deadlineNanos Deadline of the timer, as {@link System#nanoTime()}
+     * @return Timeout for the timer, which may be used to cancel it
+     */
+    public synchronized Timeout schedule(@NotNull Runnable task, long deadlineNanos) {
+        var timeout = new Timeout(task, deadlineNanos, Math.max(ceilDiv(deadlineNanos - startNanos, tickNanos), currentTick + 1));
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel up to the specified time, expiring all timers that are due
+     * @param nowNanos Current time, as {@link System#nanoTime()}
+     * @param onExpiry Consumer for tasks of expired timers; Called after the wheel's lock is released
+     * @return Number of expired timers
+     */
+    public int advance(long nowNanos, @NotNull Consumer<Runnable> onExpiry) {
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+            while (currentTick < targetTick) {
+                if (size == 0) {    // Nothing to expire or cascade; Skip ahead
+                    currentTick = targetTick;
+                    break;
+                }
+                long tick = ++currentTick;
+
+                // Cascade higher levels whose slot boundary this tick crosses, from the top down
+                int level = 1;
+                while (level < LEVELS && (tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) level++;
+                for (level--; level >= 1; level--) {
+                    var slot = wheels[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+                    for (Timeout timeout = slot.drain(); timeout != null; ) {
+                        var next = timeout.next;
+                        timeout.next = null;
+                        insert(timeout);
+                        timeout = next;
+                    }
+                }
+
+                var slot = wheels[0][(int) (tick & SLOT_MASK)];
+                for (Timeout timeout = slot.drain(); timeout != null; ) {
+                    var next = timeout.next;
+                    timeout.next = null;
+                    timeout.isExpired = true;
+                    expired.add(timeout.task);
+                    size--;
+                    timeout = next;
+                }
+            }
+        }
+        expired.forEach(onExpiry);
+        return expired.size();
+    }
+
+    /**
+     * @return Number of pending timers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Inserts a timeout into the lowest level at which its deadline is less than one full rotation of the current position
+     */
+    private void insert(Timeout timeout) {
+        long deadlineTick = timeout.deadlineTick;   // Never before the current tick; Timeouts cascaded into the current tick's level 0 slot expire later this tick
+        int level = 0;
+        while (level < LEVELS - 1 && (deadlineTick >>> (SLOT_BITS * level)) - (currentTick >>> (SLOT_BITS * level)) >= SLOTS) level++;
+        wheels[level][(int) ((deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK)].add(timeout);
+    }
+
+    private synchronized boolean cancel(Timeout timeout) {
+        if (timeout.isExpired || timeout.isCancelled) return false;
+        timeout.isCancelled = true;
+        timeout.slot.remove(timeout);
+        size--;
+        return true;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * Pending timer in a timing wheel
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final long deadlineTick;
+        private Slot slot;
+        private Timeout previous;
+        private Timeout next;
+        private boolean isExpired = false;
+        private boolean isCancelled = false;
+
+        private Timeout(Runnable task, long deadlineNanos, long deadlineTick) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * @return Deadline of this timer, as {@link System#nanoTime()}
+         */
+        public long deadlineNanos() {
+            return deadlineNanos;
+        }
+
+        /**
+         * Cancels this timer
+         * @return True if this timer was cancelled, false if it had already expired or been cancelled
+         */
+        public boolean cancel() {
+            return TimingWheel.this.cancel(this);
+        }
+
+        public boolean isExpired() {
+            synchronized (TimingWheel.this) {
+                return isExpired;
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (TimingWheel.this) {
+                return isCancelled;
+            }
+        }
+    }
+
+    /**
+     * Doubly-linked list of timeouts, for O(1) removal
+     */
+    private static final class Slot {
+        private Timeout head = null;
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) head.previous = timeout;
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) timeout.next.previous = timeout.previous;
+            timeout.slot = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        /**
+         * Empties this slot
+         * @return Former head of the slot; The remaining timeouts are linked through {@link Timeout#next}
+         */
+        Timeout drain() {
+            var timeout = head;
+            head = null;
+            for (var t = timeout; t != null; t = t.next) {
+                t.slot = null;
+                t.previous = null;
+            }
+            return timeout;
+        }
+    }
+}
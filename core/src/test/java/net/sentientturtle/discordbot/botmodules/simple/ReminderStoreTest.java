@@ -0,0 +1,147 @@
+package net.sentientturtle.discordbot.botmodules.simple;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReminderStoreTest {
+    private static final long HOUR = 3600_000;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void remindersPersistAcrossReopen() throws IOException {
+        var indexFile = new File(directory, "reminders.idx");
+        var messageFile = new File(directory, "reminders.msg");
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            store.add(1, "first", NOW + HOUR, NOW);
+            store.add(1, null, "0 9 * * *", NOW + 2 * HOUR, NOW);
+            store.add(2, "other user", NOW + 3 * HOUR, NOW);
+        }
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            assertEquals(3, store.size());
+            var reminders = store.forUser(1);
+            assertEquals(2, reminders.size());
+            assertEquals("first", reminders.get(0).message());
+            assertNull(reminders.get(0).recurrence());
+            assertNull(reminders.get(1).message());
+            assertEquals("0 9 * * *", reminders.get(1).recurrence());
+            assertEquals(2, store.dueBefore(NOW + 2 * HOUR + 1, NOW).size());
+        }
+    }
+
+    @Test
+    void removedRemindersStayRemoved() throws IOException {
+        var indexFile = new File(directory, "reminders.idx");
+        var messageFile = new File(directory, "reminders.msg");
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            var reminder = store.add(1, "first", NOW + HOUR, NOW);
+            assertTrue(store.remove(reminder));
+            assertFalse(store.remove(reminder));
+            assertNull(store.reschedule(reminder, NOW + 2 * HOUR));
+        }
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            assertEquals(0, store.size());
+            assertTrue(store.dueBefore(NOW + 2 * HOUR, NOW).isEmpty());
+        }
+    }
+
+    @Test
+    void compactionKeepsMessages() throws IOException {
+        var indexFile = new File(directory, "reminders.idx");
+        var messageFile = new File(directory, "reminders.msg");
+        List<ReminderStore.StoredReminder> kept = fillWithWaste(indexFile, messageFile);
+        long wastefulSize = messageFile.length();
+
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            assertTrue(messageFile.length() < wastefulSize);
+            assertMessages(store, kept);
+        }
+    }
+
+    @Test
+    void recoversFromCompactionInterruptedBeforeIndexUpdate() throws IOException {
+        var indexFile = new File(directory, "reminders.idx");
+        var messageFile = new File(directory, "reminders.msg");
+        List<ReminderStore.StoredReminder> kept = fillWithWaste(indexFile, messageFile);
+        var staleIndex = new File(directory, "stale.idx");
+        Files.copy(indexFile.toPath(), staleIndex.toPath());
+
+        new ReminderStore(indexFile, messageFile).close();     // Compacts
+        Files.copy(staleIndex.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);     // As if the index was not updated before a crash
+
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            assertMessages(store, kept);
+        }
+    }
+
+    @Test
+    void discardsCompactionInterruptedBeforeReplacingMessages() throws IOException {
+        var indexFile = new File(directory, "reminders.idx");
+        var messageFile = new File(directory, "reminders.msg");
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            store.add(1, "first", NOW + HOUR, NOW);
+        }
+        var compactedFile = new File(directory, "reminders.msg.tmp");
+        Files.write(compactedFile.toPath(), new byte[]{1, 2, 3});
+
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            assertFalse(compactedFile.exists());
+            assertEquals("first", store.forUser(1).get(0).message());
+        }
+    }
+
+    @Test
+    void rejectsMessagesOfAnotherGeneration() throws IOException {
+        var indexFile = new File(directory, "reminders.idx");
+        var messageFile = new File(directory, "reminders.msg");
+        fillWithWaste(indexFile, messageFile);
+        var oldMessages = new File(directory, "old.msg");
+        Files.copy(messageFile.toPath(), oldMessages.toPath());
+
+        new ReminderStore(indexFile, messageFile).close();     // Compacts
+        Files.copy(oldMessages.toPath(), messageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertThrows(IOException.class, () -> new ReminderStore(indexFile, messageFile));
+    }
+
+    /**
+     * Adds reminders with messages, and removes most of them; Enough is wasted that the store compacts its messages when next opened
+     * @return The reminders that were kept
+     */
+    private static List<ReminderStore.StoredReminder> fillWithWaste(File indexFile, File messageFile) throws IOException {
+        List<ReminderStore.StoredReminder> kept = new ArrayList<>();
+        String padding = "x".repeat(1000);
+        try (var store = new ReminderStore(indexFile, messageFile)) {
+            for (int i = 0; i < 3000; i++) {
+                var reminder = store.add(i, padding + i, i % 3 == 0 ? "recurrence " + i : null, NOW + i * HOUR, NOW);
+                if (i % 10 == 0) {
+                    kept.add(reminder);
+                } else {
+                    store.remove(reminder);
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static void assertMessages(ReminderStore store, List<ReminderStore.StoredReminder> expected) throws IOException {
+        assertEquals(expected.size(), store.size());
+        for (var reminder : expected) {
+            var stored = store.forUser(reminder.userID());
+            assertEquals(1, stored.size());
+            assertEquals(reminder.message(), stored.get(0).message());
+            assertEquals(reminder.recurrence(), stored.get(0).recurrence());
+        }
+    }
+}
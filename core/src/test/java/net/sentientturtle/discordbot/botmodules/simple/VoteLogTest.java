@@ -0,0 +1,114 @@
+package net.sentientturtle.discordbot.botmodules.simple;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoteLogTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void replaysRunningVotesAndCompacts() throws IOException {
+        var file = new File(directory, "votes.log");
+        try (var log = new VoteLog(file, new Events())) {
+            start(log, 1);
+            log.ballot(1, 100, new int[]{0});
+            start(log, 2);
+            log.ballot(2, 200, new int[]{0, 1});
+            log.end(1);
+            log.ballot(2, 201, new int[]{1});
+            log.flush();
+        }
+
+        var events = new Events();
+        new VoteLog(file, events).close();
+        assertEquals(List.of("start 1", "ballot 1 100 [0]", "start 2", "ballot 2 200 [0, 1]", "end 1", "ballot 2 201 [1]"), events.events);
+
+        events = new Events();
+        new VoteLog(file, events).close();
+        assertEquals(List.of("start 2", "ballot 2 200 [0, 1]", "ballot 2 201 [1]"), events.events);     // Ended vote compacted away
+    }
+
+    @Test
+    void ignoresTornBallot() throws IOException {
+        var file = new File(directory, "votes.log");
+        try (var log = new VoteLog(file, new Events())) {
+            start(log, 1);
+            log.ballot(1, 100, new int[]{0});
+            log.ballot(1, 101, new int[]{1});
+        }
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);    // Crashed while writing the last ballot
+        }
+
+        var events = new Events();
+        try (var log = new VoteLog(file, events)) {
+            assertEquals(List.of("start 1", "ballot 1 100 [0]"), events.events);
+            log.ballot(1, 102, new int[]{0});   // Appended after the torn record was dropped
+        }
+
+        events = new Events();
+        new VoteLog(file, events).close();
+        assertEquals(List.of("start 1", "ballot 1 100 [0]", "ballot 1 102 [0]"), events.events);
+    }
+
+    @Test
+    void ignoresBallotsOfUnknownVotes() throws IOException {
+        var file = new File(directory, "votes.log");
+        try (var log = new VoteLog(file, new Events())) {
+            log.ballot(7, 100, new int[]{0});
+            start(log, 1);
+        }
+        var events = new Events();
+        new VoteLog(file, events).close();
+        assertEquals(List.of("start 1"), events.events);
+    }
+
+    @Test
+    void replaysLiveResultsMode() throws IOException {
+        var file = new File(directory, "votes.log");
+        try (var log = new VoteLog(file, new Events())) {
+            start(log, 1);
+            log.start(2, "Vote 2", 10, 21, "select", 1_000_000, "EVERYONE", List.of("Yes", "No"), true);
+        }
+        var events = new Events();
+        new VoteLog(file, events).close();
+        assertEquals(List.of(2L), events.liveVotes);
+    }
+
+    private static void start(VoteLog log, long voteID) throws IOException {
+        log.start(voteID, "Vote " + voteID, 10, 20, "select", 1_000_000, "EVERYONE", List.of("Yes", "No"), false);
+    }
+
+    private static final class Events implements VoteLog.Replay {
+        final List<String> events = new ArrayList<>();
+        final List<Long> liveVotes = new ArrayList<>();
+
+        @Override
+        public void start(long voteID, String title, long channelID, long messageID, String selectID, long endEpochMillis, String permission, List<String> options, boolean isLive) {
+            assertEquals("Vote " + voteID, title);
+            assertEquals(List.of("Yes", "No"), options);
+            if (isLive) liveVotes.add(voteID);
+            events.add("start " + voteID);
+        }
+
+        @Override
+        public void ballot(long voteID, long userID, int[] selectedOptions) {
+            events.add("ballot " + voteID + " " + userID + " " + Arrays.toString(selectedOptions));
+        }
+
+        @Override
+        public void end(long voteID) {
+            events.add("end " + voteID);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.sentientturtle.discordbot.components.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobLogTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void replaysPendingJobs() throws IOException {
+        var file = new File(directory, "jobs.log");
+        try (var jobs = new JobLog(file)) {
+            jobs.add("remind", NOW, payload("first"));
+            var finished = jobs.add("remind", NOW + 1000, payload("second"));
+            jobs.add("expire", NOW + 2000, payload("third"));
+            jobs.finish(finished);
+            assertFalse(jobs.contains(finished.id));
+        }
+
+        try (var jobs = new JobLog(file)) {
+            assertEquals(List.of("first"), payloads(jobs.pending("remind")));
+            assertEquals(List.of("third"), payloads(jobs.pending("expire")));
+            assertEquals(4, jobs.add("remind", NOW, payload("fourth")).id);     // IDs of finished jobs are not reused
+        }
+    }
+
+    @Test
+    void finishedJobsAreCompactedAway() throws IOException {
+        var file = new File(directory, "jobs.log");
+        try (var jobs = new JobLog(file)) {
+            jobs.add("remind", NOW, payload("kept"));
+            for (int i = 0; i < 100; i++) jobs.finish(jobs.add("remind", NOW, payload("finished " + i)));
+        }
+        long uncompactedSize = file.length();
+
+        try (var jobs = new JobLog(file)) {
+            assertTrue(file.length() < uncompactedSize);
+            assertEquals(List.of("kept"), payloads(jobs.pending("remind")));
+        }
+    }
+
+    @Test
+    void overdueJobsAreCaughtUpInDueOrder() throws IOException {
+        var file = new File(directory, "jobs.log");
+        try (var jobs = new JobLog(file)) {
+            jobs.add("remind", NOW - 1000, payload("b"));
+            jobs.add("remind", NOW - 5000, payload("a"));
+            jobs.add("expire", NOW - 3000, payload("other type"));
+            jobs.add("remind", NOW - 1000, payload("c"));      // Same due time as "b", scheduled later
+            jobs.add("remind", NOW + 1000, payload("d"));
+        }
+
+        try (var jobs = new JobLog(file)) {
+            assertEquals(List.of("a", "b", "c", "d"), payloads(jobs.pending("remind")));
+        }
+    }
+
+    @Test
+    void jobsAfterTornRecordAreKept() throws IOException {
+        var file = new File(directory, "jobs.log");
+        try (var jobs = new JobLog(file)) {
+            jobs.add("remind", NOW, payload("first"));
+            jobs.add("remind", NOW, payload("torn"));
+        }
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);    // Crashed while writing the last job
+        }
+
+        try (var jobs = new JobLog(file)) {
+            assertEquals(List.of("first"), payloads(jobs.pending("remind")));
+            jobs.add("remind", NOW, payload("third"));
+        }
+
+        try (var jobs = new JobLog(file)) {
+            assertEquals(List.of("first", "third"), payloads(jobs.pending("remind")));
+        }
+    }
+
+    private static byte[] payload(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(List<JobLog.Job> jobs) {
+        return jobs.stream().map(job -> new String(job.payload, StandardCharsets.UTF_8)).toList();
+    }
+}
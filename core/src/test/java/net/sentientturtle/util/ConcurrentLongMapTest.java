@@ -0,0 +1,108 @@
+package net.sentientturtle.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongMapTest {
+    @Test
+    void putGetRemove() {
+        var map = new ConcurrentLongMap<String>();
+        assertNull(map.put(1, "a"));
+        assertEquals("a", map.put(1, "b"));
+        assertEquals("b", map.get(1));
+        assertNull(map.get(2));
+        assertEquals("b", map.remove(1));
+        assertNull(map.remove(1));
+        assertEquals(0, map.size());
+
+        map.put(0, "zero");
+        map.put(Long.MIN_VALUE, "min");
+        assertEquals("zero", map.get(0));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    void conditionalRemoveComparesIdentity() {
+        var map = new ConcurrentLongMap<String>();
+        var value = new String("a");
+        map.put(1, value);
+        assertFalse(map.remove(1, new String("a")));
+        assertTrue(map.remove(1, value));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void removalShiftsProbeRunAroundTheEndOfTheTable() {
+        // Three keys with their home at the last index of the same segment's table, and one at the first; The run wraps around
+        List<Long> lastIndex = Hashes.keysWithHome(0, 15, 3);
+        long firstIndex = Hashes.keysWithHome(0, 0, 1).get(0);
+        var map = new ConcurrentLongMap<Long>();
+        for (long key : lastIndex) map.put(key, key);
+        map.put(firstIndex, firstIndex);
+
+        assertEquals(lastIndex.get(0), map.remove(lastIndex.get(0)));
+        for (long key : lastIndex.subList(1, 3)) assertEquals(key, map.get(key));
+        assertEquals(firstIndex, map.get(firstIndex));
+
+        assertEquals(lastIndex.get(1), map.remove(lastIndex.get(1)));
+        assertEquals(lastIndex.get(2), map.get(lastIndex.get(2)));
+        assertEquals(firstIndex, map.get(firstIndex));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void removeIfAcrossWrappedProbeRun() {
+        List<Long> lastIndex = Hashes.keysWithHome(0, 15, 4);
+        var map = new ConcurrentLongMap<Long>();
+        for (long key : lastIndex) map.put(key, key);
+
+        assertEquals(2, map.removeIf(value -> value.equals(lastIndex.get(0)) || value.equals(lastIndex.get(2))));
+        assertNull(map.get(lastIndex.get(0)));
+        assertNull(map.get(lastIndex.get(2)));
+        assertEquals(lastIndex.get(1), map.get(lastIndex.get(1)));
+        assertEquals(lastIndex.get(3), map.get(lastIndex.get(3)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void evictOneRemovesFromTheKeysSegment() {
+        var map = new ConcurrentLongMap<Long>();
+        assertNull(map.evictOne(1));
+        List<Long> keys = Hashes.keysWithHome(3, 7, 2);
+        for (long key : keys) map.put(key, key);
+        long otherSegment = Hashes.keysWithHome(4, 7, 1).get(0);
+        map.put(otherSegment, otherSegment);
+
+        assertNull(map.evictOne(Hashes.keysWithHome(5, 0, 1).get(0)));    // Empty segment
+        var evicted = map.evictOne(Hashes.keysWithHome(3, 0, 1).get(0));
+        assertTrue(keys.contains(evicted));
+        assertNull(map.get(evicted));
+        assertEquals(2, map.size());
+        assertEquals(otherSegment, map.get(otherSegment));
+    }
+
+    @Test
+    void matchesHashMapUnderChurn() {
+        var random = new Random(42);
+        var map = new ConcurrentLongMap<Long>();
+        var expected = new HashMap<Long, Long>();
+        List<Long> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) keys.add(random.nextLong());
+        for (int i = 0; i < 200_000; i++) {
+            long key = keys.get(random.nextInt(keys.size()));
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key : keys) assertEquals(expected.get(key), map.get(key));
+    }
+}
@@ -0,0 +1,56 @@
+package net.sentientturtle.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongSetTest {
+    @Test
+    void addAndContains() {
+        var set = new ConcurrentLongSet();
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(43));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void zeroIsNotTheEmptyMarker() {
+        var set = new ConcurrentLongSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void probeRunWrapsAroundTheEndOfTheTable() {
+        List<Long> lastIndex = Hashes.keysWithHome(0, 15, 3);
+        long firstIndex = Hashes.keysWithHome(0, 0, 1).get(0);
+        var set = new ConcurrentLongSet();
+        for (long value : lastIndex) assertTrue(set.add(value));
+        assertTrue(set.add(firstIndex));
+        for (long value : lastIndex) assertTrue(set.contains(value));
+        assertTrue(set.contains(firstIndex));
+        assertFalse(set.contains(Hashes.keysWithHome(0, 15, 4).get(3)));
+    }
+
+    @Test
+    void matchesHashSetThroughGrowth() {
+        var random = new Random(42);
+        var set = new ConcurrentLongSet();
+        var expected = new HashSet<Long>();
+        for (int i = 0; i < 50_000; i++) {
+            long value = random.nextInt(100_000) - 50_000L;
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = -50_000; value < 50_000; value++) assertEquals(expected.contains(value), set.contains(value));
+    }
+}
@@ -0,0 +1,90 @@
+package net.sentientturtle.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronScheduleTest {
+    private static final ZoneId AMSTERDAM = ZoneId.of("Europe/Amsterdam");     // DST gap on 2021-03-28 02:00, overlap on 2021-10-31 02:00-03:00
+
+    @Test
+    void firesStrictlyAfter() {
+        var schedule = new CronSchedule("15 10 * * *", ZoneOffset.UTC);
+        assertEquals(Instant.parse("2021-09-01T10:15:00Z"), schedule.next(Instant.parse("2021-09-01T10:14:59Z")));
+        assertEquals(Instant.parse("2021-09-02T10:15:00Z"), schedule.next(Instant.parse("2021-09-01T10:15:00Z")));
+    }
+
+    @Test
+    void restrictedDayOfMonthAndDayOfWeekMatchEither() {
+        var schedule = new CronSchedule("0 12 13 * FRI", ZoneOffset.UTC);    // The 13th, or any Friday
+        assertFirings(schedule, Instant.parse("2021-09-01T00:00:00Z"),
+                "2021-09-03T12:00:00Z", "2021-09-10T12:00:00Z", "2021-09-13T12:00:00Z", "2021-09-17T12:00:00Z");
+    }
+
+    @Test
+    void starredDayFieldRequiresBoth() {
+        var schedule = new CronSchedule("0 12 */2 * 5", ZoneOffset.UTC);     // Odd days that are Fridays; "*/2" starts with '*'
+        assertFirings(schedule, Instant.parse("2021-09-01T00:00:00Z"),
+                "2021-09-03T12:00:00Z", "2021-09-17T12:00:00Z", "2021-10-01T12:00:00Z");
+    }
+
+    @Test
+    void sevenIsSunday() {
+        var start = Instant.parse("2021-09-01T00:00:00Z");
+        assertEquals(new CronSchedule("0 0 * * 0", ZoneOffset.UTC).next(start), new CronSchedule("0 0 * * 7", ZoneOffset.UTC).next(start));
+        assertFirings(new CronSchedule("0 0 * * 5-7", ZoneOffset.UTC), start,
+                "2021-09-03T00:00:00Z", "2021-09-04T00:00:00Z", "2021-09-05T00:00:00Z", "2021-09-10T00:00:00Z");
+    }
+
+    @Test
+    void namesAndMacros() {
+        var start = Instant.parse("2021-09-01T00:00:00Z");
+        assertEquals(Instant.parse("2021-09-05T00:00:00Z"), new CronSchedule("@weekly", ZoneOffset.UTC).next(start));
+        assertEquals(Instant.parse("2022-01-01T00:00:00Z"), new CronSchedule("@yearly", ZoneOffset.UTC).next(start));
+        assertEquals(Instant.parse("2021-12-06T09:00:00Z"), new CronSchedule("0 9 * dec mon", ZoneOffset.UTC).next(start));
+    }
+
+    @Test
+    void leapDay() {
+        var schedule = new CronSchedule("0 0 29 2 *", ZoneOffset.UTC);
+        assertEquals(Instant.parse("2024-02-29T00:00:00Z"), schedule.next(Instant.parse("2021-09-01T00:00:00Z")));
+    }
+
+    @Test
+    void invalidExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> new CronSchedule("0 0 * *", ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new CronSchedule("60 0 * * *", ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new CronSchedule("0 0 5-1 * *", ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new CronSchedule("0 0 * * 8", ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new CronSchedule("0 0 31 2 *", ZoneOffset.UTC));    // Never fires
+    }
+
+    @Test
+    void timeInDaylightSavingGapIsShiftedForward() {
+        var schedule = new CronSchedule("30 2 * * *", AMSTERDAM);
+        assertFirings(schedule, Instant.parse("2021-03-27T12:00:00Z"),
+                "2021-03-28T01:30:00Z",     // 02:30 does not exist; 03:30 CEST
+                "2021-03-29T00:30:00Z");    // 02:30 CEST
+    }
+
+    @Test
+    void timeInDaylightSavingOverlapFiresOnce() {
+        var schedule = new CronSchedule("30 2 * * *", AMSTERDAM);
+        assertFirings(schedule, Instant.parse("2021-10-30T12:00:00Z"),
+                "2021-10-31T00:30:00Z",     // 02:30 CEST, the earlier of the two
+                "2021-11-01T01:30:00Z");    // 02:30 CET
+        assertEquals(Instant.parse("2021-11-01T01:30:00Z"), schedule.next(Instant.parse("2021-10-31T01:00:00Z")));     // 02:00 CET; Not again at the repeated 02:30
+    }
+
+    private static void assertFirings(CronSchedule schedule, Instant start, String... expected) {
+        var time = start;
+        for (String firing : expected) {
+            time = schedule.next(time);
+            assertEquals(Instant.parse(firing), time);
+        }
+    }
+}
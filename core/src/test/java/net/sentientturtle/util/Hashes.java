@@ -0,0 +1,35 @@
+package net.sentientturtle.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds keys that land in specific places of the segmented hash tables; Mirrors their hashing
+ */
+final class Hashes {
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private Hashes() {}
+
+    /**
+     * @return The first keys from 1 upwards that map to the specified segment, with their home at the specified index of a new table
+     */
+    static List<Long> keysWithHome(int segment, int index, int count) {
+        List<Long> keys = new ArrayList<>(count);
+        for (long key = 1; keys.size() < count; key++) {
+            long hash = mix(key);
+            if ((int) (hash >>> (Long.SIZE - SEGMENT_BITS)) == segment && ((int) hash & (INITIAL_TABLE_SIZE - 1)) == index) keys.add(key);
+        }
+        return keys;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
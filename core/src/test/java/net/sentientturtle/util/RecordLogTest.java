@@ -0,0 +1,129 @@
+package net.sentientturtle.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordLogTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void missingFileReplaysAsEmpty() throws IOException {
+        var log = new RecordLog(new File(directory, "log"), 1024);
+        assertTrue(log.replay(body -> fail("Unexpected record")));
+        assertFalse(log.isOpen());
+    }
+
+    @Test
+    void appendedRecordsReplayInOrder() throws IOException {
+        var file = new File(directory, "log");
+        try (var log = new RecordLog(file, 1024)) {
+            log.rewrite(List.of());
+            log.append(bytes("a"));
+            log.append(bytes(""));
+            log.append(bytes("ccc"));
+        }
+        assertEquals(List.of("a", "", "ccc"), replay(file));
+        assertEquals(3 * 8 + 4, file.length());
+    }
+
+    @Test
+    void tornTailIsIgnoredAndDroppedByRewrite() throws IOException {
+        var file = new File(directory, "log");
+        writeLog(file, "first", "second");
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 2);    // Interrupted while writing the body
+        }
+        List<String> records = new ArrayList<>();
+        var log = new RecordLog(file, 1024);
+        assertFalse(log.replay(body -> records.add(string(body))));
+        assertEquals(List.of("first"), records);
+
+        log.rewrite(List.of(bytes("first")));
+        log.append(bytes("third"));
+        log.close();
+        assertEquals(List.of("first", "third"), replay(file));
+    }
+
+    @Test
+    void tornFrameIsIgnored() throws IOException {
+        var file = new File(directory, "log");
+        writeLog(file, "first");
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[]{0, 0, 0});     // Interrupted while writing the frame
+        }
+        List<String> records = new ArrayList<>();
+        assertFalse(new RecordLog(file, 1024).replay(body -> records.add(string(body))));
+        assertEquals(List.of("first"), records);
+    }
+
+    @Test
+    void corruptRecordEndsReplay() throws IOException {
+        var file = new File(directory, "log");
+        writeLog(file, "first", "second", "third");
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8 + 5 + 8);    // First byte of the second body
+            raf.write('S');
+        }
+        List<String> records = new ArrayList<>();
+        assertFalse(new RecordLog(file, 1024).replay(body -> records.add(string(body))));
+        assertEquals(List.of("first"), records);
+    }
+
+    @Test
+    void overlongRecordIsRejected() throws IOException {
+        var file = new File(directory, "log");
+        writeLog(file, "0123456789");
+        assertFalse(new RecordLog(file, 4).replay(body -> fail("Unexpected record")));
+
+        try (var log = new RecordLog(file, 4)) {
+            log.rewrite(List.of());
+            assertThrows(IllegalArgumentException.class, () -> log.append(bytes("01234")));
+        }
+    }
+
+    @Test
+    void truncateEmptiesTheLog() throws IOException {
+        var file = new File(directory, "log");
+        try (var log = new RecordLog(file, 1024)) {
+            log.rewrite(List.of(bytes("a")));
+            log.append(bytes("b"));
+            assertEquals(2 * 8 + 2, log.writtenBytes());
+            log.truncate();
+            assertEquals(0, log.writtenBytes());
+            log.append(bytes("c"));
+        }
+        assertEquals(List.of("c"), replay(file));
+    }
+
+    private static void writeLog(File file, String... records) throws IOException {
+        try (var log = new RecordLog(file, 1024)) {
+            log.rewrite(List.of());
+            for (String record : records) log.append(bytes(record));
+        }
+    }
+
+    private static List<String> replay(File file) throws IOException {
+        List<String> records = new ArrayList<>();
+        assertTrue(new RecordLog(file, 1024).replay(body -> records.add(string(body))));
+        return records;
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package net.sentientturtle.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static final long START = 1_000_000;     // Arbitrary; Times are relative to the start of the wheel
+
+    @Test
+    void expiresAtDeadline() {
+        var wheel = new TimingWheel(1, TimeUnit.NANOSECONDS, START);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule(() -> expired.add("a"), START + 5);
+        assertEquals(0, wheel.advance(START + 4, Runnable::run));
+        assertEquals(1, wheel.advance(START + 5, Runnable::run));
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void expiresOnTheFirstTickAtOrAfterDeadline() {
+        var wheel = new TimingWheel(10, TimeUnit.NANOSECONDS, START);
+        var timeout = wheel.schedule(() -> {}, START + 15);
+        assertEquals(0, wheel.advance(START + 19, Runnable::run));
+        assertEquals(1, wheel.advance(START + 20, Runnable::run));
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    void pastDeadlineExpiresOnNextTick() {
+        var wheel = new TimingWheel(1, TimeUnit.NANOSECONDS, START);
+        wheel.advance(START + 100, Runnable::run);
+        wheel.schedule(() -> {}, START);
+        assertEquals(0, wheel.advance(START + 100, Runnable::run));
+        assertEquals(1, wheel.advance(START + 101, Runnable::run));
+    }
+
+    @Test
+    void cascadesFromHigherLevelsWithoutFiringEarlyOrLate() {
+        var wheel = new TimingWheel(1, TimeUnit.NANOSECONDS, START);
+        long[] deadlines = {63, 64, 65, 64 * 3 + 5, 64 * 64 - 1, 64 * 64, 64 * 64 + 10, 64 * 64 * 64 + 1};
+        var random = new Random(7);
+        List<Long> expected = new ArrayList<>();
+        for (long deadline : deadlines) expected.add(deadline);
+        for (int i = 0; i < 500; i++) expected.add(1 + (long) random.nextInt(64 * 64 * 64 + 100));
+
+        List<Long> actual = new ArrayList<>();
+        long[] now = {0};
+        for (long deadline : expected) {
+            wheel.schedule(() -> {
+                assertEquals(deadline, now[0]);
+                actual.add(deadline);
+            }, START + deadline);
+        }
+        for (now[0] = 1; now[0] <= 64 * 64 * 64 + 100; now[0]++) wheel.advance(START + now[0], Runnable::run);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void expiresEverythingDueInOneAdvance() {
+        var wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, START);
+        for (int i = 1; i <= 1000; i++) wheel.schedule(() -> {}, START + TimeUnit.MILLISECONDS.toNanos(i * 97L));
+        assertEquals(1000, wheel.advance(START + TimeUnit.MILLISECONDS.toNanos(97_000), Runnable::run));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedulesAfterSkippingAhead() {
+        var wheel = new TimingWheel(1, TimeUnit.NANOSECONDS, START);
+        wheel.advance(START + 1_000_000, Runnable::run);     // Empty; Skips ahead
+        wheel.schedule(() -> {}, START + 1_000_070);
+        assertEquals(0, wheel.advance(START + 1_000_069, Runnable::run));
+        assertEquals(1, wheel.advance(START + 1_000_070, Runnable::run));
+    }
+
+    @Test
+    void cancel() {
+        var wheel = new TimingWheel(1, TimeUnit.NANOSECONDS, START);
+        var cancelled = wheel.schedule(() -> fail("Cancelled timer expired"), START + 5000);
+        var kept = wheel.schedule(() -> {}, START + 5000);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, wheel.size());
+        assertEquals(1, wheel.advance(START + 5000, Runnable::run));
+        assertTrue(kept.isExpired());
+        assertFalse(kept.cancel());
+    }
+}
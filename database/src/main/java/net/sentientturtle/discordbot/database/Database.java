@@ -6,6 +6,7 @@ import com.almworks.sqlite4java.SQLiteJob;
 import com.almworks.sqlite4java.SQLiteQueue;
 import net.sentientturtle.discordbot.components.StaticInitException;
 import net.sentientturtle.discordbot.components.core.Shutdown;
+import net.sentientturtle.discordbot.components.core.StartupTimeline;
 import net.sentientturtle.discordbot.components.healthcheck.HealthCheck;
 import net.sentientturtle.discordbot.components.healthcheck.HealthStatus;
 import net.sentientturtle.discordbot.loader.StaticLoaded;
@@ -48,36 +49,38 @@ public class Database implements StaticLoaded {
         }
 
         File nativeLibFolder;
-        if (System.getProperty("sqlite4java.library.path") == null) {
-            String nativelibFolderPath = System.getProperty("net.sentientturtle.discordbot.nativelibs");
-            if (nativelibFolderPath == null) {
-                logger.info("Native library folder system variable (net.sentientturtle.discordbot.nativelibs) not set, defaulting to './nativelibs'");
-                nativelibFolderPath = "./nativelibs";
-            }
-            nativeLibFolder = new File(nativelibFolderPath);
-            if (!((nativeLibFolder.exists() && nativeLibFolder.isDirectory()) || nativeLibFolder.mkdir())) {
-                throw new StaticInitException("Could not create native library folder: " + nativeLibFolder);
-            }
+        try (var ignored = StartupTimeline.begin("Database native library extraction")) {
+            if (System.getProperty("sqlite4java.library.path") == null) {
+                String nativelibFolderPath = System.getProperty("net.sentientturtle.discordbot.nativelibs");
+                if (nativelibFolderPath == null) {
+                    logger.info("Native library folder system variable (net.sentientturtle.discordbot.nativelibs) not set, defaulting to './nativelibs'");
+                    nativelibFolderPath = "./nativelibs";
+                }
+                nativeLibFolder = new File(nativelibFolderPath);
+                if (!((nativeLibFolder.exists() && nativeLibFolder.isDirectory()) || nativeLibFolder.mkdir())) {
+                    throw new StaticInitException("Could not create native library folder: " + nativeLibFolder);
+                }
 
-            for (String filename : NATIVE_LIBRARY_FILENAMES) {
-                var path = Path.of(nativelibFolderPath, filename.replace("-1.0.392", ""));  // Required to let SQLite find the native libraries
-                if (!Files.exists(path)) {
-                    try (InputStream library = Database.class.getResourceAsStream("/nativelibs/" + filename)) {
-                        if (library != null) {
-                            Files.copy(library, path);
-                        } else {
-                            throw new StaticInitException("Could find native library: " + filename);
+                for (String filename : NATIVE_LIBRARY_FILENAMES) {
+                    var path = Path.of(nativelibFolderPath, filename.replace("-1.0.392", ""));  // Required to let SQLite find the native libraries
+                    if (!Files.exists(path)) {
+                        try (InputStream library = Database.class.getResourceAsStream("/nativelibs/" + filename)) {
+                            if (library != null) {
+                                Files.copy(library, path);
+                            } else {
+                                throw new StaticInitException("Could find native library: " + filename);
+                            }
+                        } catch (IOException e) {
+                            throw new StaticInitException("Could not copy native libraries to folder", e);
                         }
-                    } catch (IOException e) {
-                        throw new StaticInitException("Could not copy native libraries to folder", e);
                     }
                 }
-            }
 
-            SQLite.setLibraryPath(nativelibFolderPath);
+                SQLite.setLibraryPath(nativelibFolderPath);
+            }
         }
 
-        try {
+        try (var ignored = StartupTimeline.begin("Database native library load")) {
             SQLite.loadLibrary();
         } catch (SQLiteException e) {
             throw new StaticInitException("Cannot find SQLite native libraries!", e);
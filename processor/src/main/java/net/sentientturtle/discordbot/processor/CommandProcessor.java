@@ -0,0 +1,397 @@
+package net.sentientturtle.discordbot.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor for bot module commands<br>
+ * Validates {@code @Command} methods at compile time and generates a {@code CommandDescriptor} per module, so that modules need not reflect over their methods at runtime.<br>
+ * Annotation types are referenced by name, as this processor is built before the core project.
+ */
+@SupportedAnnotationTypes(CommandProcessor.COMMAND)
+public class CommandProcessor extends AbstractProcessor {
+    static final String COMMAND = "net.sentientturtle.discordbot.components.module.command.Command";
+    private static final String PARAMETER = COMMAND + ".Parameter";
+    private static final String CHOICES = COMMAND + ".Choices";
+    private static final String BOT_MODULE = "net.sentientturtle.discordbot.components.module.BotModule";
+    private static final String COMMAND_CALL = "net.sentientturtle.discordbot.components.module.command.CommandCall";
+    private static final String DESCRIPTOR = "net.sentientturtle.discordbot.components.module.command.CommandDescriptor";
+    private static final String UNIFIED_COMMAND = "net.sentientturtle.discordbot.components.module.command.UnifiedCommand";
+    private static final String PERMISSION = "net.sentientturtle.discordbot.components.permission.BotPermission";
+
+    // Keep in sync with Command.NULL and Command.DERIVE_VALUE
+    private static final String NULL = "[NULL]";
+    private static final String DERIVE_VALUE = "[DERIVE]";
+
+    private static final Map<String, String> PARAMETER_TYPES = Map.of(
+            "java.lang.String", "STRING",
+            "java.lang.Long", "LONG",
+            "long", "LONG",
+            "java.lang.Boolean", "BOOLEAN",
+            "boolean", "BOOLEAN",
+            "net.dv8tion.jda.api.entities.User", "USER",
+            "net.dv8tion.jda.api.entities.AbstractChannel", "CHANNEL",
+            "net.dv8tion.jda.api.entities.Role", "ROLE",
+            "net.dv8tion.jda.api.entities.IMentionable", "MENTIONABLE"
+    );
+
+    private final Set<String> generatedDescriptors = new TreeSet<>();
+
+    private record ParameterModel(String type, String javaType, String name, String description, List<String> choices, boolean optional) {}
+
+    private record CommandModel(ExecutableElement method, String commandName, String subcommandGroup, String subcommandName, String description, boolean canEveryoneUse, List<ParameterModel> parameters) {}
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        TypeElement commandAnnotation = processingEnv.getElementUtils().getTypeElement(COMMAND);
+        if (commandAnnotation == null) return false;
+
+        Map<TypeElement, List<ExecutableElement>> moduleMethods = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(commandAnnotation))) {
+            moduleMethods.computeIfAbsent((TypeElement) method.getEnclosingElement(), type -> new ArrayList<>()).add(method);
+        }
+
+        moduleMethods.forEach((module, methods) -> {
+            boolean valid = validateModule(module);
+            List<CommandModel> commands = new ArrayList<>(methods.size());
+            for (ExecutableElement method : methods) {
+                var command = parseCommand(method);
+                if (command != null) {
+                    commands.add(command);
+                } else {
+                    valid = false;
+                }
+            }
+            if (valid) writeDescriptor(module, commands);
+        });
+        return false;
+    }
+
+    private boolean validateModule(TypeElement module) {
+        var types = processingEnv.getTypeUtils();
+        var botModule = processingEnv.getElementUtils().getTypeElement(BOT_MODULE);
+        if (botModule == null || !types.isSubtype(types.erasure(module.asType()), types.erasure(botModule.asType()))) {
+            error(module, "Command methods may only be declared in subclasses of BotModule");
+            return false;
+        }
+        if (module.getNestingKind() != NestingKind.TOP_LEVEL) {
+            error(module, "Modules must be top-level classes");
+            return false;
+        }
+        if (!module.getModifiers().contains(Modifier.PUBLIC) || module.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(module, "Modules must be public, non-abstract classes");
+            return false;
+        }
+        boolean hasConstructor = ElementFilter.constructorsIn(module.getEnclosedElements())
+                .stream()
+                .anyMatch(constructor -> constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC));
+        if (!hasConstructor) {
+            error(module, "Modules must have a public no-argument constructor");
+            return false;
+        }
+        return true;
+    }
+
+    private CommandModel parseCommand(ExecutableElement method) {
+        var annotation = getAnnotation(method, COMMAND);
+        assert annotation != null;
+        var values = annotationValues(annotation);
+
+        boolean valid = true;
+        if (method.getModifiers().contains(Modifier.PRIVATE)) {
+            error(method, "Command methods may not be private");
+            valid = false;
+        }
+
+        String commandName = (String) values.get("commandName");
+        if (commandName.equals(DERIVE_VALUE)) commandName = method.getSimpleName().toString();
+        String subcommandGroup = (String) values.get("subcommandGroup");
+        if (subcommandGroup.equals(NULL)) subcommandGroup = null;
+        String subcommandName = (String) values.get("subcommandName");
+        if (subcommandName.equals(NULL)) subcommandName = null;
+        String description = (String) values.get("description");
+        boolean canEveryoneUse = (Boolean) values.get("canEveryoneUse");
+
+        valid &= checkName(method, "CommandName", commandName);
+        if (subcommandGroup != null) valid &= checkName(method, "SubcommandGroup", subcommandGroup);
+        if (subcommandName != null) valid &= checkName(method, "SubcommandName", subcommandName);
+        valid &= checkDescription(method, description);
+        if (subcommandGroup != null && subcommandName == null) {
+            error(method, "SubcommandGroup may not be specified without subcommandName");
+            valid = false;
+        }
+
+        var parameters = method.getParameters();
+        if (parameters.isEmpty() || !isType(parameters.get(0).asType(), COMMAND_CALL)) {
+            error(method, "First parameter for Command method must be CommandCall");
+            return null;
+        }
+        if (parameters.size() - 1 > 25) {
+            error(method, "Too many parameters (Must be <= 25, was: " + (parameters.size() - 1) + ")");
+            valid = false;
+        }
+
+        List<ParameterModel> parameterModels = new ArrayList<>(parameters.size() - 1);
+        for (VariableElement parameter : parameters.subList(1, parameters.size())) {
+            var parameterModel = parseParameter(parameter);
+            if (parameterModel != null) {
+                parameterModels.add(parameterModel);
+            } else {
+                valid = false;
+            }
+        }
+
+        return valid ? new CommandModel(method, commandName, subcommandGroup, subcommandName, description, canEveryoneUse, parameterModels) : null;
+    }
+
+    private ParameterModel parseParameter(VariableElement parameter) {
+        var annotation = getAnnotation(parameter, PARAMETER);
+        if (annotation == null) {
+            error(parameter, "Command parameter is missing @Command.Parameter annotation");
+            return null;
+        }
+        var values = annotationValues(annotation);
+        String name = (String) values.get("name");
+        String description = (String) values.get("description");
+        boolean optional = (Boolean) values.get("optional");
+
+        TypeMirror typeMirror = parameter.asType();
+        String javaType = typeMirror.getKind().isPrimitive() ? typeMirror.toString() : processingEnv.getTypeUtils().erasure(typeMirror).toString();
+        String type = PARAMETER_TYPES.get(javaType);
+        if (type == null) {
+            error(parameter, "Invalid parameter type for Command method: " + javaType);
+            return null;
+        }
+
+        boolean valid = checkName(parameter, "Parameter name", name);
+        valid &= checkDescription(parameter, description);
+        if (optional && typeMirror.getKind().isPrimitive()) {
+            error(parameter, "Optional parameter may not be of primitive type");
+            valid = false;
+        }
+
+        List<String> choices = List.of();
+        var choicesAnnotation = getAnnotation(parameter, CHOICES);
+        if (choicesAnnotation != null) {
+            if (!type.equals("STRING")) {
+                error(parameter, "Parameter choices annotation may only be used on String parameters");
+                valid = false;
+            } else {
+                @SuppressWarnings("unchecked")
+                var choiceValues = (List<? extends AnnotationValue>) annotationValues(choicesAnnotation).get("value");
+                if (choiceValues.isEmpty()) {
+                    error(parameter, "Parameter choices annotation was used without choices specified");
+                    valid = false;
+                } else {
+                    choices = choiceValues.stream().map(value -> (String) value.getValue()).toList();
+                }
+            }
+        }
+
+        return valid ? new ParameterModel(type, javaType, name, description, choices, optional) : null;
+    }
+
+    private void writeDescriptor(TypeElement module, List<CommandModel> commands) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(module).getQualifiedName().toString();
+        String moduleName = module.getSimpleName().toString();
+        String descriptorName = moduleName + "Commands";
+        String qualifiedName = packageName.isEmpty() ? descriptorName : packageName + "." + descriptorName;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+        source.append("import ").append(UNIFIED_COMMAND).append(";\n\n");
+        source.append("@javax.annotation.processing.Generated(\"").append(CommandProcessor.class.getName()).append("\")\n");
+        source.append("public final class ").append(descriptorName).append(" implements ").append(DESCRIPTOR).append('<').append(moduleName).append("> {\n");
+        source.append("    @Override\n");
+        source.append("    public Class<").append(moduleName).append("> moduleClass() {\n");
+        source.append("        return ").append(moduleName).append(".class;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.util.List<UnifiedCommand> createCommands(java.util.function.Supplier<").append(moduleName).append("> module) {\n");
+        source.append("        return java.util.List.of(");
+        for (int i = 0; i < commands.size(); i++) {
+            source.append(i == 0 ? "\n" : ",\n");
+            appendCommand(source, moduleName, commands.get(i));
+        }
+        source.append("\n        );\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, module).openWriter()) {
+            writer.write(source.toString());
+            generatedDescriptors.add(qualifiedName);
+        } catch (IOException e) {
+            error(module, "Could not write command descriptor: " + e.getMessage());
+        }
+    }
+
+    private void appendCommand(StringBuilder source, String moduleName, CommandModel command) {
+        var required = command.parameters.stream().filter(parameter -> !parameter.optional).toList();
+        var optional = command.parameters.stream().filter(ParameterModel::optional).toList();
+
+        source.append("                new UnifiedCommand(\n");
+        source.append("                        ").append(literal(command.commandName)).append(",\n");
+        source.append("                        ").append(literal(command.subcommandGroup)).append(",\n");
+        source.append("                        ").append(literal(command.subcommandName)).append(",\n");
+        source.append("                        ").append(literal(command.description)).append(",\n");
+        appendParameters(source, required);
+        appendParameters(source, optional);
+        if (command.canEveryoneUse) {
+            source.append("                        ").append(PERMISSION).append(".EVERYONE(),\n");
+        } else {
+            source.append("                        ").append(PERMISSION).append(".STRING(").append(literal("cmd:" + command.commandName)).append("),\n");
+        }
+
+        // Calls provide required parameters first, followed by optional parameters; Map these back to declaration order
+        source.append("                        commandCall -> {\n");
+        source.append("                            Object[] parameters = commandCall.getParameters();\n");
+        source.append("                            ");
+        if (command.method.getModifiers().contains(Modifier.STATIC)) {
+            source.append(moduleName);
+        } else {
+            source.append("module.get()");
+        }
+        source.append('.').append(command.method.getSimpleName()).append("(commandCall");
+        int requiredIndex = 0;
+        int optionalIndex = required.size();
+        for (ParameterModel parameter : command.parameters) {
+            int index = parameter.optional ? optionalIndex++ : requiredIndex++;
+            source.append(", (").append(boxed(parameter.javaType)).append(") parameters[").append(index).append(']');
+        }
+        source.append(");\n");
+        source.append("                        }\n");
+        source.append("                )");
+    }
+
+    private void appendParameters(StringBuilder source, List<ParameterModel> parameters) {
+        source.append("                        new UnifiedCommand.Parameter[]{");
+        for (int i = 0; i < parameters.size(); i++) {
+            var parameter = parameters.get(i);
+            source.append(i == 0 ? "\n" : ",\n");
+            source.append("                                new UnifiedCommand.Parameter(UnifiedCommand.Parameter.ParameterType.").append(parameter.type)
+                    .append(", ").append(literal(parameter.name))
+                    .append(", ").append(literal(parameter.description))
+                    .append(", new UnifiedCommand.Parameter.Choice[]{");
+            for (int j = 0; j < parameter.choices.size(); j++) {
+                if (j > 0) source.append(", ");
+                var choice = literal(parameter.choices.get(j));
+                source.append("new UnifiedCommand.Parameter.Choice(").append(choice).append(", ").append(choice).append(')');
+            }
+            source.append("})");
+        }
+        source.append(parameters.isEmpty() ? "},\n" : "\n                        },\n");
+    }
+
+    private void writeServiceFile() {
+        if (generatedDescriptors.isEmpty()) return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + DESCRIPTOR);
+            try (Writer writer = file.openWriter()) {
+                for (String descriptor : generatedDescriptors) {
+                    writer.write(descriptor);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write command descriptor service file: " + e.getMessage());
+        }
+    }
+
+    private boolean checkName(Element element, String kind, String name) {
+        if (name.length() < 1 || name.length() > 32) {
+            error(element, kind + " must be 1-32 characters in length");
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-')) {
+                error(element, kind + " may only contain alphanumeric characters, hyphens, and underscores");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkDescription(Element element, String description) {
+        if (description.length() < 1 || description.length() > 100) {
+            error(element, "Description must be 1-100 characters in length");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isType(TypeMirror type, String qualifiedName) {
+        return type.getKind() == TypeKind.DECLARED && processingEnv.getTypeUtils().erasure(type).toString().equals(qualifiedName);
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String qualifiedName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(qualifiedName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> annotationValues(AnnotationMirror annotation) {
+        Map<String, Object> values = new HashMap<>();
+        processingEnv.getElementUtils()
+                .getElementValuesWithDefaults(annotation)
+                .forEach((element, value) -> values.put(element.getSimpleName().toString(), value.getValue()));
+        return values;
+    }
+
+    private static String boxed(String javaType) {
+        return switch (javaType) {
+            case "long" -> "Long";
+            case "boolean" -> "Boolean";
+            default -> javaType;
+        };
+    }
+
+    private static String literal(String value) {
+        if (value == null) return "null";
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}